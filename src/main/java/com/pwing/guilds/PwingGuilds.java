@@ -2,6 +2,7 @@ package com.pwing.guilds;
 
 import com.pwing.guilds.guild.GuildManager;
 import com.pwing.guilds.exp.GuildExpManager;
+import com.pwing.guilds.perks.LevelTable;
 import com.pwing.guilds.listeners.*;
 import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.storage.GuildStorage;
@@ -13,7 +14,10 @@ import com.pwing.guilds.api.EventRegistry;
 import com.pwing.guilds.alliance.storage.SQLAllianceStorage;
 import com.pwing.guilds.message.MessageManager;
 import com.pwing.guilds.storage.SQLGuildStorage;
+import com.pwing.guilds.storage.WriteBehindGuildStorage;
 import com.pwing.guilds.placeholders.GuildPlaceholders;
+import com.pwing.guilds.protection.ProtectionManager;
+import com.pwing.guilds.territory.TerritoryTracker;
 import com.pwing.guilds.commands.GuildCommand;
 import com.pwing.guilds.commands.GuildCommandTabCompleter;
 import com.pwing.guilds.commands.GuildAdminCommand;
@@ -45,6 +49,8 @@ import com.pwing.guilds.compat.ServerAdapter;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.Bukkit;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import java.io.File;
@@ -59,10 +65,13 @@ import com.zaxxer.hikari.HikariDataSource;
 public class PwingGuilds extends JavaPlugin {
     /** Storage implementation for guild data */
     private GuildStorage storage;
+    /** Coalescing save queue in front of the storage backend */
+    private WriteBehindGuildStorage writeBehindStorage;
     /** Manager for guild operations */
     private GuildManager guildManager;
     /** Manager for guild experience systems */
     private GuildExpManager expManager;
+    private volatile LevelTable levelTable;
     private GuildBuffManager buffManager;
     private RewardManager rewardManager;
     private Economy economy;
@@ -84,6 +93,8 @@ public class PwingGuilds extends JavaPlugin {
     private FileConfiguration structuresConfig;
     private HikariDataSource dataSource;
     private ChatManager chatManager;
+    private ProtectionManager protectionManager;
+    private TerritoryTracker territoryTracker;
     private boolean citizensEnabled;
 
     /**
@@ -148,6 +159,7 @@ public class PwingGuilds extends JavaPlugin {
 
         // Initialize ConfigManager first
         this.configManager = new ConfigManager(this);
+        reloadLevelTable();
 
         // Check if config validation is enabled
         if (getConfig().getBoolean("validate-config", false)) {
@@ -182,11 +194,31 @@ public class PwingGuilds extends JavaPlugin {
         }
 
         // Initialize GuildManager before loading guilds
-        this.guildManager = new GuildManager(this, storage, worldGuardHook);
+        this.writeBehindStorage = new WriteBehindGuildStorage(this, storage);
+        try {
+            // Reads the stored next guild id, without which ids of deleted guilds could be reused
+            this.guildManager = new GuildManager(this, writeBehindStorage, worldGuardHook);
+        } catch (RuntimeException e) {
+            getLogger().log(Level.SEVERE, "Failed to read guild data from storage! Disabling plugin.", e);
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        this.protectionManager = new ProtectionManager(this);
+        this.territoryTracker = new TerritoryTracker(this);
 
-        // Now load guilds after GuildManager is initialized
-        Set<Guild> loadedGuilds = storage.loadAllGuilds();
-        getLogger().info("Loaded " + loadedGuilds.size() + " guilds with their claims");
+        // Now load guilds after GuildManager is initialized and wait for them,
+        // so nothing below runs against an empty registry
+        long loadStart = System.currentTimeMillis();
+        Set<Guild> loadedGuilds;
+        try {
+            loadedGuilds = storage.loadAllGuildsAsync().join();
+        } catch (CompletionException e) {
+            getLogger().log(Level.SEVERE, "Failed to load guilds from storage! Disabling plugin.", e.getCause());
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        getLogger().info("Loaded " + loadedGuilds.size() + " guilds with their claims in "
+                + (System.currentTimeMillis() - loadStart) + "ms");
 
         // Initialize WorldGuard hook if the plugin is present
         if (getServer().getPluginManager().getPlugin("WorldGuard") != null) {
@@ -210,17 +242,20 @@ public class PwingGuilds extends JavaPlugin {
         this.itemCompatHandler = new ItemCompatibilityHandler(this);
 
         // Initialize managers
-        this.guildManager.initialize();
+        this.guildManager.initialize(loadedGuilds);
         this.allianceManager.initialize();
 
         // Register backup system only if using YAML storage
         if (!(storage instanceof SQLGuildStorage)) {
             guildBackupManager = new GuildBackupManager(this);
+            guildManager.setJournal(guildBackupManager.getJournal());
             getServer().getPluginManager().registerEvents(new GuildBackupListener(this, guildBackupManager), this);
         }
 
         // Register all listeners
         eventRegistry.registerListeners();
+        eventRegistry.registerListener(territoryTracker);
+        territoryTracker.trackOnlinePlayers();
 
         // Setup PlaceholderAPI if available
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
@@ -389,6 +424,24 @@ public class PwingGuilds extends JavaPlugin {
         return guildManager;
     }
 
+    /**
+     * Gets the protection manager.
+     * 
+     * @return The protection manager.
+     */
+    public ProtectionManager getProtectionManager() {
+        return protectionManager;
+    }
+
+    /**
+     * Gets the territory tracker.
+     * 
+     * @return The territory tracker.
+     */
+    public TerritoryTracker getTerritoryTracker() {
+        return territoryTracker;
+    }
+
     /**
      * Gets the item compatibility handler.
      * 
@@ -416,6 +469,23 @@ public class PwingGuilds extends JavaPlugin {
         return rewardManager;
     }
 
+    /**
+     * Gets the guild levels compiled from the config.
+     * 
+     * @return The level table.
+     */
+    public LevelTable getLevelTable() {
+        return levelTable;
+    }
+
+    /**
+     * Compiles the guild levels from the config again.
+     * Guilds pick up the new levels at once, as their perks are read from the table.
+     */
+    public void reloadLevelTable() {
+        this.levelTable = LevelTable.load(getConfig(), getLogger());
+    }
+
     /**
      * Gets the guild storage manager.
      * 
@@ -475,22 +545,24 @@ public class PwingGuilds extends JavaPlugin {
     public void onDisable() {
         getLogger().info("Starting final guild data save...");
 
-        // Save guild data based on storage type
-        if (storage instanceof YamlGuildStorage && guildManager != null) {
-            guildManager.getGuilds().forEach(guild -> {
-                try {
-                    // Use synchronous saving to avoid IllegalPluginAccessException
-                    ((YamlGuildStorage) storage).saveGuildSync(guild);
-                } catch (Exception e) {
-                    getLogger().severe("Failed to save guild: " + guild.getName());
-                    e.printStackTrace();
-                }
-            });
-        } else if (storage instanceof SQLGuildStorage && guildManager != null) {
-            // For SQL storage, just process remaining queue
-            SQLGuildStorage sqlStorage = (SQLGuildStorage) storage;
-            sqlStorage.processRemainingQueue();
-            sqlStorage.getDataSource().close();
+        // Apply collected exp before the guilds are saved
+        if (expManager != null) {
+            expManager.shutdown();
+        }
+
+        // Drain queued saves while the backend can still write them, including
+        // changes no save was requested for; unchanged guilds are not written
+        if (writeBehindStorage != null) {
+            if (guildManager != null) {
+                guildManager.getGuilds().stream()
+                        .filter(Guild::hasUnsavedChanges)
+                        .forEach(writeBehindStorage::saveGuild);
+            }
+            writeBehindStorage.shutdown();
+        }
+
+        if (storage instanceof SQLGuildStorage) {
+            ((SQLGuildStorage) storage).getDataSource().close();
         }
 
         if (configManager != null) {
@@ -521,6 +593,14 @@ public class PwingGuilds extends JavaPlugin {
     public GuildStorage getGuildStorage() {
         return storage;
     }
+
+    /**
+     * Gets the write-behind queue that coalesces guild saves.
+     * @return the WriteBehindGuildStorage
+     */
+    public WriteBehindGuildStorage getWriteBehindStorage() {
+        return writeBehindStorage;
+    }
     // Add a getter for the AllianceStorage instance
     /**
      * Gets the alliance storage.
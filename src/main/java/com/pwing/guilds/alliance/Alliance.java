@@ -3,7 +3,10 @@ package com.pwing.guilds.alliance;
 import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.guild.Guild;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.entity.Player;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -11,13 +14,17 @@ import java.util.stream.Collectors;
  */
 public class Alliance implements ConfigurationSerializable {
     private final String name;
-    private final Set<Guild> members = new HashSet<>();
+    private final Set<Guild> members = ConcurrentHashMap.newKeySet();
     private final String ownerGuild;
-    private Set<Guild> pendingInvites = new HashSet<>();
-    private Set<String> allies = new HashSet<>();
+    private final Set<Guild> pendingInvites = ConcurrentHashMap.newKeySet();
+    private final Set<String> allies = ConcurrentHashMap.newKeySet();
     private final Map<UUID, AllianceRole> roles = new HashMap<>();
     private final Set<String> tags = new HashSet<>();
     private String description;
+    // Online players of all member guilds, rebuilt after a membership or online change;
+    // the version tells a list built before the latest change from a current one
+    private volatile Recipients recipients;
+    private final AtomicInteger recipientsVersion = new AtomicInteger();
 
     /**
      * Creates a new alliance with the given name
@@ -35,6 +42,7 @@ public class Alliance implements ConfigurationSerializable {
      */
     public boolean addMember(Guild guild) {
         if (members.add(guild)) {
+            invalidateRecipients();
             guild.setAlliance(this);
             return true;
         }
@@ -60,7 +68,9 @@ public class Alliance implements ConfigurationSerializable {
      */
     public boolean acceptInvite(Guild guild) {
         if (pendingInvites.remove(guild)) {
-            return members.add(guild);
+            boolean added = members.add(guild);
+            invalidateRecipients();
+            return added;
         }
         return false;
     }
@@ -165,6 +175,10 @@ public class Alliance implements ConfigurationSerializable {
     public Map<String, Object> serialize() {
         Map<String, Object> data = new HashMap<>();
         data.put("name", name);
+        data.put("member-ids", members.stream()
+                .map(Guild::getId)
+                .collect(Collectors.toList()));
+        // Names are kept for readability and for older versions
         data.put("members", members.stream()
                 .map(Guild::getName)
                 .collect(Collectors.toList()));
@@ -278,8 +292,16 @@ public class Alliance implements ConfigurationSerializable {
         String name = (String) data.get("name");
         Alliance alliance = new Alliance(name);
 
+        List<Integer> memberIds = (List<Integer>) data.get("member-ids");
         List<String> memberNames = (List<String>) data.get("members");
-        if (memberNames != null) {
+        if (memberIds != null) {
+            // Ids survive guild renames, names do not
+            memberIds.stream()
+                    .map(plugin.getGuildManager()::getGuildById)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .forEach(alliance::addMember);
+        } else if (memberNames != null) {
             memberNames.stream()
                     .map(plugin.getGuildManager()::getGuild)
                     .filter(Optional::isPresent)
@@ -303,6 +325,33 @@ public class Alliance implements ConfigurationSerializable {
         return alliance;
     }
 
+    /**
+     * Gets the online players of all member guilds
+     * Built once and reused until a guild joins or leaves or a member goes online or offline
+     * @return Unmodifiable list of online players
+     */
+    public List<Player> getOnlineRecipients() {
+        int version = recipientsVersion.get();
+        Recipients cached = this.recipients;
+        if (cached != null && cached.version == version) {
+            return cached.players;
+        }
+        List<Player> players = new ArrayList<>();
+        for (Guild guild : members) {
+            players.addAll(guild.getOnlineMembers());
+        }
+        List<Player> built = Collections.unmodifiableList(players);
+        this.recipients = new Recipients(version, built);
+        return built;
+    }
+
+    /**
+     * Drops the cached online players, see {@link #getOnlineRecipients()}
+     */
+    public void invalidateRecipients() {
+        recipientsVersion.incrementAndGet();
+    }
+
     /**
      * Remove a member guild from the alliance
      * @param guild Guild to remove
@@ -310,10 +359,20 @@ public class Alliance implements ConfigurationSerializable {
      */
     public boolean removeMember(Guild guild) {
         if (members.remove(guild)) {
+            invalidateRecipients();
             guild.setAlliance(null);
             return true;
         }
         return false;
     }
-}
 
+    private static final class Recipients {
+        private final int version;
+        private final List<Player> players;
+
+        private Recipients(int version, List<Player> players) {
+            this.version = version;
+            this.players = players;
+        }
+    }
+}
@@ -8,14 +8,15 @@ import com.pwing.guilds.api.GuildLeaveAllianceEvent;
 
 import org.bukkit.Bukkit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages all alliances in the plugin, including creation, deletion, and storage
  */
 public class AllianceManager {
     private final PwingGuilds plugin;
-    private final Map<String, Alliance> alliances = new HashMap<>();
-    private final Map<String, Alliance> guildAllianceMap = new HashMap<>();
+    private final Map<String, Alliance> alliances = new ConcurrentHashMap<>();
+    private final Map<Integer, Alliance> guildAllianceMap = new ConcurrentHashMap<>();
     private final AllianceStorage storage;
 
     /**
@@ -36,7 +37,7 @@ public class AllianceManager {
         loadedAlliances.forEach(alliance -> {
             alliances.put(alliance.getName(), alliance);
             alliance.getMembers().forEach(guild ->
-                    guildAllianceMap.put(guild.getName(), alliance));
+                    guildAllianceMap.put(guild.getId(), alliance));
         });
         plugin.getLogger().info("Loaded " + alliances.size() + " alliances");
     }
@@ -72,7 +73,7 @@ public class AllianceManager {
         if (alliance != null) {
             alliance.getMembers().forEach(guild -> {
                 guild.setAlliance(null);
-                guildAllianceMap.remove(guild.getName());
+                guildAllianceMap.remove(guild.getId());
             });
             storage.deleteAlliance(name);
         }
@@ -92,7 +93,7 @@ public class AllianceManager {
 
             if (!event.isCancelled()) {
                 alliance.addMember(guild);
-                guildAllianceMap.put(guild.getName(), alliance);
+                guildAllianceMap.put(guild.getId(), alliance);
                 storage.saveAlliance(alliance);
                 return true;
             }
@@ -114,7 +115,7 @@ public class AllianceManager {
 
             if (!event.isCancelled()) {
                 alliance.removeMember(guild);
-                guildAllianceMap.remove(guild.getName());
+                guildAllianceMap.remove(guild.getId());
                 storage.saveAlliance(alliance);
                 return true;
             }
@@ -124,19 +125,19 @@ public class AllianceManager {
 
     /**
      * Updates the alliance of a guild
-     * @param guildName The name of the guild
+     * @param guild The guild
      * @param alliance The new alliance
      */
-    public void updateGuildAlliance(String guildName, Alliance alliance) {
-        guildAllianceMap.put(guildName, alliance);
+    public void updateGuildAlliance(Guild guild, Alliance alliance) {
+        guildAllianceMap.put(guild.getId(), alliance);
     }
 
     /**
      * Removes the alliance of a guild
-     * @param guildName The name of the guild
+     * @param guild The guild
      */
-    public void removeGuildAlliance(String guildName) {
-        guildAllianceMap.remove(guildName);
+    public void removeGuildAlliance(Guild guild) {
+        guildAllianceMap.remove(guild.getId());
     }
 
     /**
@@ -149,11 +150,11 @@ public class AllianceManager {
 
     /**
      * Gets the alliance of a guild
-     * @param guildName The name of the guild
+     * @param guild The guild
      * @return Optional containing the alliance if found
      */
-    public Optional<Alliance> getGuildAlliance(String guildName) {
-        return Optional.ofNullable(guildAllianceMap.get(guildName));
+    public Optional<Alliance> getGuildAlliance(Guild guild) {
+        return Optional.ofNullable(guildAllianceMap.get(guild.getId()));
     }
 
     /**
@@ -3,6 +3,7 @@ package com.pwing.guilds.alliance.storage;
 import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.alliance.Alliance;
 import com.pwing.guilds.alliance.AllianceRole;
+import com.pwing.guilds.storage.GuildIdMigration;
 import com.zaxxer.hikari.HikariDataSource;
 
 import java.sql.*;
@@ -39,8 +40,8 @@ public class SQLAllianceStorage implements AllianceStorage {
 
             stmt.execute("CREATE TABLE IF NOT EXISTS alliance_members (" +
                     "alliance_name VARCHAR(32)," +
-                    "guild_name VARCHAR(32)," +
-                    "PRIMARY KEY (alliance_name, guild_name)," +
+                    "guild_id INT," +
+                    "PRIMARY KEY (alliance_name, guild_id)," +
                     "FOREIGN KEY (alliance_name) REFERENCES alliances(name) ON DELETE CASCADE" +
                     ")");
 
@@ -52,6 +53,11 @@ public class SQLAllianceStorage implements AllianceStorage {
                     "FOREIGN KEY (alliance_name) REFERENCES alliances(name) ON DELETE CASCADE" +
                     ")");
 
+            int orphans = GuildIdMigration.migrateChildTable(conn, "alliance_members", "alliance_name, guild_id");
+            if (orphans >= 0) {
+                plugin.getLogger().info("Migrated alliance members to guild ids, dropped " + orphans + " rows of deleted guilds");
+            }
+
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to initialize alliance tables: " + e.getMessage());
             e.printStackTrace();
@@ -73,10 +79,10 @@ public class SQLAllianceStorage implements AllianceStorage {
 
                 // Save members
                 try (PreparedStatement ps = conn.prepareStatement(
-                        "INSERT INTO alliance_members (alliance_name, guild_name) VALUES (?, ?)")) {
+                        "INSERT INTO alliance_members (alliance_name, guild_id) VALUES (?, ?)")) {
                     for (var guild : alliance.getMembers()) {
                         ps.setString(1, alliance.getName());
-                        ps.setString(2, guild.getName());
+                        ps.setInt(2, guild.getId());
                         ps.addBatch();
                     }
                     ps.executeBatch();
@@ -136,11 +142,11 @@ public class SQLAllianceStorage implements AllianceStorage {
     private void loadAllianceData(Alliance alliance, Connection conn) throws SQLException {
         // Load members
         try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT guild_name FROM alliance_members WHERE alliance_name = ?")) {
+                "SELECT guild_id FROM alliance_members WHERE alliance_name = ?")) {
             ps.setString(1, alliance.getName());
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                plugin.getGuildManager().getGuild(rs.getString("guild_name"))
+                plugin.getGuildManager().getGuildById(rs.getInt("guild_id"))
                     .ifPresent(alliance::addMember);
             }
         }
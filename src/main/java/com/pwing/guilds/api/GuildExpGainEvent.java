@@ -7,6 +7,8 @@ import com.pwing.guilds.guild.Guild;
 
 /**
  * Called when a guild gains experience points
+ * Exp from block breaks and kills is collected and reported once per flush, so the
+ * amount may cover many gains
  * Can be cancelled to prevent the exp gain
  */
 public class GuildExpGainEvent extends Event implements Cancellable {
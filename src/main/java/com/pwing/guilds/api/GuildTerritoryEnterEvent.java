@@ -0,0 +1,47 @@
+package com.pwing.guilds.api;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.entity.Player;
+import com.pwing.guilds.guild.Guild;
+
+/**
+ * Called when a player enters a guild's claimed territory.
+ * Fired once per chunk border crossing, or when the chunk a player stands in is claimed or unclaimed.
+ */
+public class GuildTerritoryEnterEvent extends Event {
+    private static final HandlerList handlers = new HandlerList();
+    private final Player player;
+    private final Guild guild;
+
+    /**
+     * Creates a new GuildTerritoryEnterEvent
+     * @param player The player who entered the territory
+     * @param guild The guild owning the territory
+     */
+    public GuildTerritoryEnterEvent(Player player, Guild guild) {
+        this.player = player;
+        this.guild = guild;
+    }
+
+    /**
+     * Gets the player who entered the territory
+     * @return The player
+     */
+    public Player getPlayer() { return player; }
+
+    /**
+     * Gets the guild owning the territory
+     * @return The guild
+     */
+    public Guild getGuild() { return guild; }
+
+    @Override
+    public HandlerList getHandlers() { return handlers; }
+
+    /**
+     * Gets the handler list for this event.
+     * @return The handler list
+     */
+    public static HandlerList getHandlerList() { return handlers; }
+}
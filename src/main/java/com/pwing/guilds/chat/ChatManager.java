@@ -5,26 +5,31 @@ import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.alliance.Alliance;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import com.pwing.guilds.compat.ServerAdapter;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.ChatColor;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
  * Manages chat input for players.
  */
 public class ChatManager implements Listener {
-    private final Map<Player, Consumer<AsyncPlayerChatEvent>> responseHandlers = new HashMap<>();
-    private final Map<UUID, ChatMode> playerChatModes = new HashMap<>();
-    private final Set<UUID> socialSpyPlayers = new HashSet<>();
-    private final Map<UUID, Boolean> pendingTagChanges = new HashMap<>();
+    private final Map<Player, Consumer<AsyncPlayerChatEvent>> responseHandlers = new ConcurrentHashMap<>();
+    private final Map<UUID, ChatMode> playerChatModes = new ConcurrentHashMap<>();
+    private final Set<UUID> socialSpyPlayers = ConcurrentHashMap.newKeySet();
+    // Spies currently online, so a message does not look every spy up
+    private final Set<Player> onlineSpies = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Boolean> pendingTagChanges = new ConcurrentHashMap<>();
     private final PwingGuilds plugin;
 
     /**
@@ -61,20 +66,20 @@ public class ChatManager implements Listener {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
 
-        if (pendingTagChanges.containsKey(playerId)) {
+        if (pendingTagChanges.remove(playerId) != null) {
             event.setCancelled(true);
             String newTag = event.getMessage().trim();
-            plugin.getGuildManager().getPlayerGuild(playerId).ifPresent(guild -> {
-                guild.setTag(newTag);
-                plugin.getGuildManager().getStorage().saveGuild(guild);
-                player.sendMessage(ChatColor.GREEN + "Guild tag set to: " + newTag);
-            });
-            pendingTagChanges.remove(playerId);
+            // Guild state is only written on the main thread
+            Bukkit.getScheduler().runTask(plugin, () ->
+                plugin.getGuildManager().getPlayerGuild(playerId).ifPresent(guild -> {
+                    plugin.getGuildManager().setGuildTag(guild, newTag);
+                    player.sendMessage(ChatColor.GREEN + "Guild tag set to: " + newTag);
+                }));
         }
 
-        if (responseHandlers.containsKey(player)) {
+        Consumer<AsyncPlayerChatEvent> handler = responseHandlers.remove(player);
+        if (handler != null) {
             event.setCancelled(true);
-            Consumer<AsyncPlayerChatEvent> handler = responseHandlers.remove(player);
             handler.accept(event);
             return;
         }
@@ -122,8 +127,7 @@ public class ChatManager implements Listener {
             Alliance alliance = guild.getAlliance();
             if (alliance != null) {
                 String formattedMessage = "[Alliance] " + player.getName() + ": " + message;
-                alliance.getMembers().forEach(memberGuild -> 
-                    memberGuild.broadcastMessage(formattedMessage));
+                plugin.getServerAdapter().broadcast(alliance.getOnlineRecipients(), formattedMessage);
                 logAndSpy(player, formattedMessage);
             } else {
                 player.sendMessage("Your guild is not part of an alliance.");
@@ -140,14 +144,38 @@ public class ChatManager implements Listener {
      */
     private void logAndSpy(Player player, String message) {
         plugin.getLogger().info(message);
-        for (UUID spyUUID : socialSpyPlayers) {
-            Player spy = Bukkit.getPlayer(spyUUID);
-            if (spy != null && spy.isOnline() && !spy.equals(player)) {
-                spy.sendMessage("[Spy] " + message);
+        ServerAdapter.PreparedMessage spyMessage = null;
+        for (Player spy : onlineSpies) {
+            if (!spy.equals(player)) {
+                if (spyMessage == null) {
+                    spyMessage = plugin.getServerAdapter().prepareMessage("[Spy] " + message);
+                }
+                spyMessage.send(spy);
             }
         }
     }
 
+    /**
+     * Marks the player as an online spy.
+     * @param event the PlayerJoinEvent
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        if (socialSpyPlayers.contains(player.getUniqueId())) {
+            onlineSpies.add(player);
+        }
+    }
+
+    /**
+     * Removes the player from the online spies.
+     * @param event the PlayerQuitEvent
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        onlineSpies.remove(event.getPlayer());
+    }
+
     /**
      * Toggles the player's chat mode.
      * @param player The player to toggle chat mode for
@@ -175,9 +203,11 @@ public class ChatManager implements Listener {
         UUID playerUUID = player.getUniqueId();
         if (socialSpyPlayers.contains(playerUUID)) {
             socialSpyPlayers.remove(playerUUID);
+            onlineSpies.remove(player);
             player.sendMessage("Social spy disabled.");
         } else {
             socialSpyPlayers.add(playerUUID);
+            onlineSpies.add(player);
             player.sendMessage("Social spy enabled.");
         }
     }
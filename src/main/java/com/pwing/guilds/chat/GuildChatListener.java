@@ -38,11 +38,7 @@ public class GuildChatListener implements Listener {
         plugin.getGuildManager().getPlayerGuild(event.getPlayer().getUniqueId()).ifPresent(guild -> {
             String message = event.getMessage().substring(2).trim();
             String format = ChatColor.BLUE + "[Guild] " + ChatColor.GRAY + event.getPlayer().getName() + ": " + ChatColor.WHITE + message;
-            
-            guild.getMembers().stream()
-                    .map(plugin.getServer()::getPlayer)
-                    .filter(player -> player != null && player.isOnline())
-                    .forEach(player -> player.sendMessage(format));
+            guild.broadcastMessage(format);
         });
     }
 }
@@ -1,6 +1,8 @@
 package com.pwing.guilds.commands;
 
 import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.exp.ExpSource;
+import com.pwing.guilds.exp.GuildExpManager;
 import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.guild.GuildManager;
 import com.pwing.guilds.message.MessageManager;
@@ -127,20 +129,33 @@ public class GuildAdminCommand implements CommandExecutor {
         }
 
         String guildName = args[1];
-        plugin.getGuildManager().getGuild(guildName).ifPresent(guild -> {
+        plugin.getGuildManager().getGuild(guildName).ifPresentOrElse(guild -> {
             Map<String, String> replacements = new HashMap<>();
             replacements.put("guild", guild.getName());
             replacements.put("level", String.valueOf(guild.getLevel()));
             replacements.put("count", String.valueOf(guild.getMembers().size()));
             replacements.put("claims", String.valueOf(guild.getClaimedChunks().size()));
             replacements.put("bonus", String.valueOf(guild.getBonusClaims()));
+            GuildExpManager expManager = plugin.getExpManager();
+            long rate = 0;
+            long raw = 0;
+            for (ExpSource source : ExpSource.values()) {
+                long sourceRate = expManager.getExpRate(guild.getId(), source, true);
+                rate += sourceRate;
+                raw += expManager.getExpRate(guild.getId(), source, false);
+                replacements.put(source.getConfigKey(), String.valueOf(sourceRate));
+            }
+            replacements.put("rate", String.valueOf(rate));
+            replacements.put("raw", String.valueOf(raw));
 
             sender.sendMessage(mm.getMessage("commands.admin.info.header", replacements));
             sender.sendMessage(mm.getMessage("commands.admin.info.level", replacements));
             sender.sendMessage(mm.getMessage("commands.admin.info.members", replacements));
             sender.sendMessage(mm.getMessage("commands.admin.info.claims", replacements));
             sender.sendMessage(mm.getMessage("commands.admin.info.bonus-claims", replacements));
-        });
+            sender.sendMessage(mm.getMessage("commands.admin.info.exp-rate", replacements));
+            sender.sendMessage(mm.getMessage("commands.admin.info.exp-sources", replacements));
+        }, () -> sender.sendMessage(mm.getMessage("error.guild-not-found")));
     }
 
     private void handleMigrateCommand(CommandSender sender, String[] args) {
@@ -177,6 +192,7 @@ public class GuildAdminCommand implements CommandExecutor {
         Set<Guild> guilds = from.loadAllGuilds();
         for (Guild guild : guilds) {
             try {
+                guild.requestFullSave();
                 to.saveGuild(guild);
             } catch (Exception e) {
                 plugin.getLogger().severe("Failed to migrate guild: " + guild.getName());
@@ -14,6 +14,7 @@ import java.util.stream.Collectors;
  * Provides tab completion for guild admin commands.
  */
 public class GuildAdminCommandTabCompleter implements TabCompleter {
+    private static final int MAX_GUILD_SUGGESTIONS = 50;
     private final PwingGuilds plugin;
 
     /**
@@ -38,10 +39,7 @@ public class GuildAdminCommandTabCompleter implements TabCompleter {
         }
 
         if (args.length == 2) {
-            return plugin.getGuildManager().getGuilds().stream()
-                    .map(guild -> guild.getName())
-                    .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
-                    .collect(Collectors.toList());
+            return plugin.getGuildManager().getGuildNamesStartingWith(args[1], MAX_GUILD_SUGGESTIONS);
         }
 
         if (args.length == 3) {
@@ -17,6 +17,7 @@ import java.util.stream.Collectors;
  * Handles suggestions for command arguments and subcommands.
  */
 public class GuildCommandTabCompleter implements TabCompleter {
+    private static final int MAX_GUILD_SUGGESTIONS = 50;
     private final PwingGuilds plugin;
 
     /**
@@ -53,6 +54,9 @@ public class GuildCommandTabCompleter implements TabCompleter {
                         .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
                         .collect(Collectors.toList());
                 }
+                case "accept" -> {
+                    return plugin.getGuildManager().getGuildNamesStartingWith(args[1], MAX_GUILD_SUGGESTIONS);
+                }
                 case "home", "delhome" -> {
                     if (sender instanceof Player player) {
                         return plugin.getGuildManager().getPlayerGuild(player.getUniqueId())
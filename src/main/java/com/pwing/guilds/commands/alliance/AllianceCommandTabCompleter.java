@@ -15,6 +15,7 @@ import java.util.stream.Collectors;
  * Suggests command arguments based on context
  */
 public class AllianceCommandTabCompleter implements TabCompleter {
+    private static final int MAX_GUILD_SUGGESTIONS = 50;
     private final PwingGuilds plugin;
 
     /**
@@ -45,10 +46,7 @@ public class AllianceCommandTabCompleter implements TabCompleter {
         if (args.length == 2) {
             switch (args[0].toLowerCase()) {
                 case "invite" -> {
-                    return plugin.getGuildManager().getGuilds().stream()
-                            .map(guild -> guild.getName())
-                            .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
-                            .collect(Collectors.toList());
+                    return plugin.getGuildManager().getGuildNamesStartingWith(args[1], MAX_GUILD_SUGGESTIONS);
                 }
                 case "accept", "decline", "info" -> {
                     return plugin.getAllianceManager().getAllAlliances().stream()
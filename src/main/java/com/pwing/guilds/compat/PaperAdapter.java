@@ -7,6 +7,7 @@ import org.bukkit.inventory.meta.SkullMeta;
 import org.bukkit.Material;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 
 /**
  * Adapter for Paper server-specific features.
@@ -28,6 +29,12 @@ public class PaperAdapter extends ServerAdapter {
         audience.sendActionBar(Component.text(message));
     }
 
+    @Override
+    public PreparedMessage prepareMessage(String message) {
+        Component component = LegacyComponentSerializer.legacySection().deserialize(message);
+        return player -> ((Audience) player).sendMessage(component);
+    }
+
     @Override
     public int getPing(Player player) {
         return player.getPing(); // Paper method
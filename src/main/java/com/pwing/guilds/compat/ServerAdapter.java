@@ -47,6 +47,41 @@ public abstract class ServerAdapter {
      * @return The player's head item.
      */
     public abstract ItemStack getPlayerHeadItem(Player player);
+
+    /**
+     * Converts a chat message into the server's component format once, so it can be
+     * sent to many players without being parsed again for each of them.
+     * @param message The message, with legacy color codes.
+     * @return The prepared message.
+     */
+    public abstract PreparedMessage prepareMessage(String message);
+
+    /**
+     * Sends a chat message to several players, converting it only once.
+     * @param players The players to send the message to.
+     * @param message The message, with legacy color codes.
+     */
+    public void broadcast(Iterable<? extends Player> players, String message) {
+        PreparedMessage prepared = null;
+        for (Player player : players) {
+            if (prepared == null) {
+                prepared = prepareMessage(message);
+            }
+            prepared.send(player);
+        }
+    }
+
+    /**
+     * A chat message converted for the server, see {@link #prepareMessage(String)}.
+     */
+    @FunctionalInterface
+    public interface PreparedMessage {
+        /**
+         * Sends the message to a player.
+         * @param player The player to send the message to.
+         */
+        void send(Player player);
+    }
     
     /**
      * Creates a server adapter for the given server.
@@ -1,6 +1,7 @@
 package com.pwing.guilds.compat;
 
 import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.TextComponent;
 import org.bukkit.Material;
 import org.bukkit.Server;
@@ -26,6 +27,12 @@ public class SpigotAdapter extends ServerAdapter {
         player.spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(message));
     }
 
+    @Override
+    public PreparedMessage prepareMessage(String message) {
+        BaseComponent[] components = TextComponent.fromLegacyText(message);
+        return player -> player.spigot().sendMessage(components);
+    }
+
     @Override
     public int getPing(Player player) {
         try {
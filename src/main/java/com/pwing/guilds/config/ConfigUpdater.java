@@ -5,6 +5,7 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import java.io.File;
 import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.exp.GuildExpManager;
 
 
 /**
@@ -51,6 +52,24 @@ public class ConfigUpdater {
             }
         }
 
+        // Older default configs nested the mythicmobs exp section under vanilla-mobs,
+        // where the exp manager does not look for it
+        ConfigurationSection nestedMythicMobs = currentConfig.getConfigurationSection(GuildExpManager.LEGACY_MYTHIC_PATH);
+        if (nestedMythicMobs != null) {
+            if (currentConfig.contains("exp-sources.mythicmobs")) {
+                plugin.getLogger().warning("Ignoring " + GuildExpManager.LEGACY_MYTHIC_PATH
+                        + ", exp-sources.mythicmobs is already set");
+            } else {
+                nestedMythicMobs.getValues(true).forEach((key, value) -> {
+                    if (!(value instanceof ConfigurationSection)) {
+                        currentConfig.set("exp-sources.mythicmobs." + key, value);
+                    }
+                });
+                currentConfig.set(GuildExpManager.LEGACY_MYTHIC_PATH, null);
+                plugin.getLogger().info("Moved " + GuildExpManager.LEGACY_MYTHIC_PATH + " to exp-sources.mythicmobs");
+            }
+        }
+
         // Ensure GUI items section exists
         if (!currentConfig.isConfigurationSection("gui.items")) {
             currentConfig.createSection("gui.items");
@@ -93,17 +93,29 @@ public class ExplorationRaceEvent extends GuildEvent implements Listener {
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent event) {
         if (!isActive) return;
+
+        // Ignore head rotation and sub-block movement
+        Location from = event.getFrom();
+        Location playerLoc = event.getTo();
+        if (playerLoc == null || (from.getBlockX() == playerLoc.getBlockX()
+                && from.getBlockY() == playerLoc.getBlockY()
+                && from.getBlockZ() == playerLoc.getBlockZ()
+                && from.getWorld() == playerLoc.getWorld())) {
+            return;
+        }
         
         Player player = event.getPlayer();
         Optional<Guild> guildOpt = plugin.getGuildManager().getPlayerGuild(player.getUniqueId());
         if (!guildOpt.isPresent()) return;
         
         Guild guild = guildOpt.get();
-        Location playerLoc = player.getLocation();
-        ChunkLocation newChunk = new ChunkLocation(playerLoc.getChunk());
+        boolean crossedChunk = (from.getBlockX() >> 4) != (playerLoc.getBlockX() >> 4)
+                || (from.getBlockZ() >> 4) != (playerLoc.getBlockZ() >> 4)
+                || from.getWorld() != playerLoc.getWorld();
         
         // Track new chunks
-        if (exploredChunks.computeIfAbsent(guild, k -> new HashSet<>()).add(newChunk)) {
+        if (crossedChunk && exploredChunks.computeIfAbsent(guild, k -> new HashSet<>()).add(
+                new ChunkLocation(playerLoc.getWorld().getName(), playerLoc.getBlockX() >> 4, playerLoc.getBlockZ() >> 4))) {
             player.spigot().sendMessage(net.md_5.bungee.api.ChatMessageType.ACTION_BAR, 
                 net.md_5.bungee.api.chat.TextComponent.fromLegacyText(
                     "§bNew chunk discovered! (§e" + exploredChunks.get(guild).size() + "§b)"
@@ -113,7 +125,8 @@ public class ExplorationRaceEvent extends GuildEvent implements Listener {
         // Check for nearby checkpoints
         checkpoints.forEach((id, checkpoint) -> {
             if (!discoveredCheckpoints.computeIfAbsent(guild, k -> new HashSet<>()).contains(id) 
-                && playerLoc.distance(checkpoint) <= CHECKPOINT_RADIUS) {
+                && checkpoint.getWorld() == playerLoc.getWorld()
+                && playerLoc.distanceSquared(checkpoint) <= CHECKPOINT_RADIUS * CHECKPOINT_RADIUS) {
                 
                 discoveredCheckpoints.get(guild).add(id);
                 
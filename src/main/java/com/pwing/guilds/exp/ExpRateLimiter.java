@@ -0,0 +1,118 @@
+package com.pwing.guilds.exp;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Limits how fast one guild earns exp from each source, to curb AFK farms.
+ * Every source has a token bucket of exp: gains are awarded in full while the bucket
+ * has tokens, and only a configured share of them once it is empty, so a farm
+ * running all day earns far less than its raw output. Gains before and after the
+ * limit are counted in a ring of one-second slots, which gives admins the guild's
+ * rate over the last minute.
+ * Uses only primitive arrays, so a gain costs a few arithmetic operations.
+ */
+final class ExpRateLimiter {
+    /** Seconds covered by the rate counters */
+    static final int WINDOW_SECONDS = 60;
+    private static final int SOURCES = ExpSource.values().length;
+
+    private final double[] tokens = new double[SOURCES];
+    private final long[] lastRefill = new long[SOURCES];
+    // Fractions of reduced exp, carried over so single-exp gains are not rounded away
+    private final double[] carry = new double[SOURCES];
+    private final long[] slotSecond = new long[WINDOW_SECONDS];
+    private final long[] earned = new long[WINDOW_SECONDS * SOURCES];
+    private final long[] awarded = new long[WINDOW_SECONDS * SOURCES];
+
+    /**
+     * Applies the limit to a gain and counts it
+     * @param source Where the exp comes from
+     * @param amount The exp earned
+     * @param limit The limit of the source, or null if it is not limited
+     * @param now The current time in milliseconds
+     * @return The exp to award
+     */
+    synchronized long apply(ExpSource source, long amount, Limit limit, long now) {
+        int s = source.ordinal();
+        long granted = amount;
+        if (limit != null) {
+            if (lastRefill[s] == 0) {
+                tokens[s] = limit.burst;
+            } else if (now > lastRefill[s]) {
+                tokens[s] = Math.min(limit.burst, tokens[s] + (now - lastRefill[s]) * limit.refillPerMilli);
+            }
+            lastRefill[s] = now;
+            if (tokens[s] >= amount) {
+                tokens[s] -= amount;
+            } else {
+                long full = (long) tokens[s];
+                tokens[s] -= full;
+                double reduced = (amount - full) * limit.overflowMultiplier + carry[s];
+                long whole = (long) reduced;
+                carry[s] = reduced - whole;
+                granted = full + whole;
+            }
+        }
+
+        long second = now / 1000;
+        int slot = (int) (second % WINDOW_SECONDS);
+        if (slotSecond[slot] != second) {
+            slotSecond[slot] = second;
+            for (int i = 0; i < SOURCES; i++) {
+                earned[slot * SOURCES + i] = 0;
+                awarded[slot * SOURCES + i] = 0;
+            }
+        }
+        earned[slot * SOURCES + s] += amount;
+        awarded[slot * SOURCES + s] += granted;
+        return granted;
+    }
+
+    /**
+     * Gets the exp of a source over the last minute
+     * @param source The source
+     * @param afterLimit Whether to count the exp awarded rather than the exp earned
+     * @param now The current time in milliseconds
+     * @return The exp over the last {@link #WINDOW_SECONDS} seconds
+     */
+    synchronized long getRate(ExpSource source, boolean afterLimit, long now) {
+        long second = now / 1000;
+        long[] counts = afterLimit ? awarded : earned;
+        long total = 0;
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            if (slotSecond[slot] > second - WINDOW_SECONDS && slotSecond[slot] <= second) {
+                total += counts[slot * SOURCES + source.ordinal()];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The rate limit of one source, compiled from its rate-limit section
+     */
+    static final class Limit {
+        private final double burst;
+        private final double refillPerMilli;
+        private final double overflowMultiplier;
+
+        private Limit(double burst, double perMinute, double overflowMultiplier) {
+            this.burst = burst;
+            this.refillPerMilli = perMinute / 60_000D;
+            this.overflowMultiplier = overflowMultiplier;
+        }
+
+        /**
+         * Reads a limit from config
+         * @param section The rate-limit section of a source
+         * @return The limit, or null if the section is missing or disabled
+         */
+        static Limit load(ConfigurationSection section) {
+            if (section == null || !section.getBoolean("enabled", true)) {
+                return null;
+            }
+            double perMinute = Math.max(0D, section.getDouble("per-minute", 1000));
+            return new Limit(Math.max(1D, section.getDouble("burst", perMinute)), perMinute,
+                    Math.min(1D, Math.max(0D, section.getDouble("overflow-multiplier", 0.1))));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.pwing.guilds.exp;
+
+/**
+ * Where guild exp comes from
+ * Each source has its own rate limit per guild, set in its rate-limit section
+ */
+public enum ExpSource {
+    /** Breaking blocks */
+    BLOCKS("blocks"),
+    /** Killing vanilla mobs */
+    VANILLA_MOBS("vanilla-mobs"),
+    /** Killing MythicMobs */
+    MYTHIC_MOBS("mythicmobs");
+
+    private final String configKey;
+
+    ExpSource(String configKey) {
+        this.configKey = configKey;
+    }
+
+    /**
+     * Gets the section of this source under exp-sources in config.yml
+     * @return The config key
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+}
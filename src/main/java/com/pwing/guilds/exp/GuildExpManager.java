@@ -1,26 +1,152 @@
 package com.pwing.guilds.exp;
 
 import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.guild.Guild;
 import io.lumine.mythic.bukkit.MythicBukkit;
 import io.lumine.mythic.core.mobs.ActiveMob;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
 import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manages experience points for guilds
  * Handles exp calculations and level progression
+ * Exp from block breaks and kills is collected per guild and applied once per flush,
+ * so a guild mining thousands of blocks fires one exp event and one level check per
+ * flush instead of one per block.
+ * Exp values are compiled from the config into lookup tables on load and on
+ * {@link #reload()}, so awarding exp never touches the config.
  */
 public class GuildExpManager {
+    private static final long DEFAULT_FLUSH_INTERVAL = 20L;
+    /** Where the default config used to nest the mythicmobs section */
+    public static final String LEGACY_MYTHIC_PATH = "exp-sources.vanilla-mobs.mythicmobs";
+
     private final PwingGuilds plugin;
     private boolean mythicMobsEnabled;
+    private volatile ExpTables tables;
+    // Exp collected since the last flush, by guild id
+    private final Map<Integer, PendingExp> pending = new ConcurrentHashMap<>();
+    private final BukkitTask flushTask;
 
     /**
-     * Creates a new guild exp manager
+     * Creates a new guild exp manager and starts its flush timer
      * @param plugin Plugin instance
      */
     public GuildExpManager(PwingGuilds plugin) {
         this.plugin = plugin;
         setupMythicMobs();
+        reload();
+        long flushInterval = Math.max(1L, plugin.getConfig().getLong("exp-sources.flush-interval", DEFAULT_FLUSH_INTERVAL));
+        this.flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, flushInterval, flushInterval);
+    }
+
+    /**
+     * Collects exp for a guild to be applied on the next flush
+     * The guild's rate limit for the source may reduce the amount
+     * @param guild The guild earning the exp
+     * @param player The player who earned it, told if the flush levels the guild up
+     * @param amount Amount of exp
+     * @param source Where the exp comes from
+     */
+    public void queueExp(Guild guild, Player player, long amount, ExpSource source) {
+        if (amount <= 0) {
+            return;
+        }
+        PendingExp entry = pending.computeIfAbsent(guild.getId(), id -> new PendingExp(guild));
+        long granted = entry.limiter.apply(source, amount, tables.limits[source.ordinal()], System.currentTimeMillis());
+        if (granted > 0) {
+            entry.exp.add(granted);
+            entry.contributors.add(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Collects the exp for a broken block, see {@link #queueExp(Guild, Player, long, ExpSource)}
+     * @param guild The guild earning the exp
+     * @param player The player who broke the block
+     * @param block The block that was broken
+     */
+    public void queueBlockExp(Guild guild, Player player, Block block) {
+        queueExp(guild, player, calculateBlockExp(block), ExpSource.BLOCKS);
+    }
+
+    /**
+     * Collects the exp for a killed mob, see {@link #queueExp(Guild, Player, long, ExpSource)}
+     * @param guild The guild earning the exp
+     * @param player The player who killed the mob
+     * @param entity The killed entity
+     */
+    public void queueMobExp(Guild guild, Player player, Entity entity) {
+        if (mythicMobsEnabled && isMythicMob(entity)) {
+            queueExp(guild, player, calculateMythicMobExp(entity), ExpSource.MYTHIC_MOBS);
+        } else {
+            queueExp(guild, player, calculateVanillaMobExp(entity), ExpSource.VANILLA_MOBS);
+        }
+    }
+
+    /**
+     * Gets how much exp a guild earned from a source over the last minute
+     * @param guildId The guild id
+     * @param source The source
+     * @param afterLimit Whether to count only the exp the rate limit let through
+     * @return Exp per minute
+     */
+    public long getExpRate(int guildId, ExpSource source, boolean afterLimit) {
+        PendingExp entry = pending.get(guildId);
+        return entry != null ? entry.limiter.getRate(source, afterLimit, System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Applies the exp collected since the last flush, one gain per guild
+     * Runs on the main thread from the flush timer
+     */
+    public void flush() {
+        pending.forEach((guildId, entry) -> {
+            // Deleted or reloaded guilds must not receive exp meant for the old instance
+            Guild guild = plugin.getGuildManager().getGuildById(guildId).orElse(null);
+            if (guild != entry.guild) {
+                pending.remove(guildId, entry);
+                return;
+            }
+            long amount = entry.exp.sumThenReset();
+            if (amount == 0) {
+                return;
+            }
+            boolean leveledUp = guild.addExp(amount);
+            Iterator<UUID> contributors = entry.contributors.iterator();
+            while (contributors.hasNext()) {
+                UUID uuid = contributors.next();
+                contributors.remove();
+                Player player = leveledUp ? Bukkit.getPlayer(uuid) : null;
+                if (player != null) {
+                    player.sendMessage("§aYour guild has reached level " + guild.getLevel() + "!");
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the flush timer and applies any exp still collected
+     */
+    public void shutdown() {
+        flushTask.cancel();
+        flush();
     }
 
     private void setupMythicMobs() {
@@ -29,15 +155,37 @@ public class GuildExpManager {
         }
     }
 
+    /**
+     * Compiles the exp values in the config into lookup tables
+     * Call after the config was reloaded
+     */
+    public void reload() {
+        tables = new ExpTables(plugin);
+    }
+
+    /**
+     * Checks whether breaking blocks awards exp
+     * @return true if block exp is enabled
+     */
+    public boolean isBlockExpEnabled() {
+        return tables.blocksEnabled;
+    }
+
+    /**
+     * Checks whether killing mobs awards exp
+     * @return true if vanilla or MythicMobs exp is enabled
+     */
+    public boolean isMobExpEnabled() {
+        return tables.mobsEnabled || tables.mythicEnabled;
+    }
+
     /**
      * Calculates experience points for breaking a block
      * @param block The block that was broken
      * @return Amount of exp to award
      */
     public long calculateBlockExp(Block block) {
-        String blockType = block.getType().name();
-        return plugin.getConfig().getLong("exp-sources.blocks.values." + blockType,
-                plugin.getConfig().getLong("exp-sources.blocks.values.DEFAULT", 1));
+        return tables.blockExp[block.getType().ordinal()];
     }
 
     /**
@@ -49,10 +197,13 @@ public class GuildExpManager {
         if (mythicMobsEnabled && isMythicMob(entity)) {
             return calculateMythicMobExp(entity);
         }
-        
-        String entityType = entity.getType().name();
-        return plugin.getConfig().getLong("exp-sources.vanilla-mobs.values." + entityType,
-                plugin.getConfig().getLong("exp-sources.vanilla-mobs.values.DEFAULT", 5));
+        return calculateVanillaMobExp(entity);
+    }
+
+    private long calculateVanillaMobExp(Entity entity) {
+        ExpTables tables = this.tables;
+        Long exp = tables.mobExp.get(entity.getType());
+        return exp != null ? exp : tables.defaultMobExp;
     }
 
     private boolean isMythicMob(Entity entity) {
@@ -61,17 +212,111 @@ public class GuildExpManager {
 
     private long calculateMythicMobExp(Entity entity) {
         ActiveMob mythicMob = MythicBukkit.inst().getMobManager().getMythicMobInstance(entity);
-        String mobId = mythicMob.getMobType();
-        
-        // Check for specific mob ID first
-        long specificExp = plugin.getConfig().getLong("exp-sources.mythicmobs.mobs." + mobId, -1);
-        if (specificExp != -1) {
-            return specificExp;
+        ExpTables tables = this.tables;
+        Long exp = tables.mythicExp.get(mythicMob.getMobType());
+        if (exp != null) {
+            return exp;
+        }
+        // Fall back to the tier multiplier, resolved once per mob type
+        return tables.resolvedMythicExp.computeIfAbsent(mythicMob.getMobType(), mobId -> {
+            String tier = mythicMob.getType().getConfig().getString("tier", "DEFAULT");
+            return tables.tierExp.getOrDefault(tier, tables.defaultTierExp);
+        });
+    }
+
+    /**
+     * Exp values compiled from one version of the config
+     * Replaced as a whole on reload, so lookups never see a half-built table
+     */
+    private static final class ExpTables {
+        private final boolean blocksEnabled;
+        private final boolean mobsEnabled;
+        private final boolean mythicEnabled;
+        private final long[] blockExp;
+        private final Map<EntityType, Long> mobExp = new EnumMap<>(EntityType.class);
+        private final long defaultMobExp;
+        private final Map<String, Long> mythicExp = new HashMap<>();
+        private final Map<String, Long> tierExp = new HashMap<>();
+        private final long defaultTierExp;
+        // Tier fallback of each MythicMob type seen so far
+        private final Map<String, Long> resolvedMythicExp = new ConcurrentHashMap<>();
+        // Rate limit of each source by ordinal, null if unlimited
+        private final ExpRateLimiter.Limit[] limits = new ExpRateLimiter.Limit[ExpSource.values().length];
+
+        private ExpTables(PwingGuilds plugin) {
+            ConfigurationSection config = plugin.getConfig();
+            blocksEnabled = config.getBoolean("exp-sources.blocks.enabled");
+            mobsEnabled = config.getBoolean("exp-sources.vanilla-mobs.enabled");
+            // Configs created before the section was moved still have it under vanilla-mobs;
+            // ConfigUpdater moves it, this covers the config already loaded
+            String mythicPath = "exp-sources.mythicmobs";
+            if (!config.contains(mythicPath, true) && config.contains(LEGACY_MYTHIC_PATH, true)) {
+                mythicPath = LEGACY_MYTHIC_PATH;
+            }
+            mythicEnabled = config.getBoolean(mythicPath + ".enabled");
+
+            blockExp = new long[Material.values().length];
+            Arrays.fill(blockExp, config.getLong("exp-sources.blocks.values.DEFAULT", 1));
+            ConfigurationSection blocks = config.getConfigurationSection("exp-sources.blocks.values");
+            if (blocks != null) {
+                for (String key : blocks.getKeys(false)) {
+                    Material material = Material.getMaterial(key);
+                    if (material != null) {
+                        blockExp[material.ordinal()] = blocks.getLong(key, blockExp[material.ordinal()]);
+                    } else if (!key.equals("DEFAULT")) {
+                        plugin.getLogger().warning("Unknown block in exp-sources.blocks.values: " + key);
+                    }
+                }
+            }
+
+            defaultMobExp = config.getLong("exp-sources.vanilla-mobs.values.DEFAULT", 5);
+            ConfigurationSection mobs = config.getConfigurationSection("exp-sources.vanilla-mobs.values");
+            if (mobs != null) {
+                for (String key : mobs.getKeys(false)) {
+                    if (key.equals("DEFAULT")) {
+                        continue;
+                    }
+                    try {
+                        mobExp.put(EntityType.valueOf(key), mobs.getLong(key, defaultMobExp));
+                    } catch (IllegalArgumentException e) {
+                        plugin.getLogger().warning("Unknown mob in exp-sources.vanilla-mobs.values: " + key);
+                    }
+                }
+            }
+
+            ConfigurationSection mythicMobs = config.getConfigurationSection(mythicPath + ".mobs");
+            if (mythicMobs == null) {
+                // The default config lists them under values
+                mythicMobs = config.getConfigurationSection(mythicPath + ".values");
+            }
+            if (mythicMobs != null) {
+                for (String key : mythicMobs.getKeys(false)) {
+                    mythicExp.put(key, mythicMobs.getLong(key));
+                }
+            }
+            defaultTierExp = config.getLong(mythicPath + ".multipliers.DEFAULT", 10);
+            ConfigurationSection tiers = config.getConfigurationSection(mythicPath + ".multipliers");
+            if (tiers != null) {
+                for (String key : tiers.getKeys(false)) {
+                    tierExp.put(key, tiers.getLong(key, defaultTierExp));
+                }
+            }
+
+            for (ExpSource source : ExpSource.values()) {
+                String path = source == ExpSource.MYTHIC_MOBS ? mythicPath : "exp-sources." + source.getConfigKey();
+                limits[source.ordinal()] = ExpRateLimiter.Limit.load(config.getConfigurationSection(path + ".rate-limit"));
+            }
+        }
+    }
+
+    private static final class PendingExp {
+        private final Guild guild;
+        private final ExpRateLimiter limiter = new ExpRateLimiter();
+        private final LongAdder exp = new LongAdder();
+        private final Set<UUID> contributors = ConcurrentHashMap.newKeySet();
+
+        private PendingExp(Guild guild) {
+            this.guild = guild;
         }
-        
-        // Fall back to tier multiplier
-        String tier = mythicMob.getType().getConfig().getString("tier", "DEFAULT");
-        return plugin.getConfig().getLong("exp-sources.mythicmobs.multipliers." + tier,
-                plugin.getConfig().getLong("exp-sources.mythicmobs.multipliers.DEFAULT", 10));
     }
 }
\ No newline at end of file
@@ -423,20 +423,17 @@ public class GuildManagementGUI implements Listener {
                 
                 Chunk clickedChunk = player.getWorld().getChunkAt(chunkX, chunkZ);
                 
-                // Convert Bukkit Chunk to ChunkLocation that Guild methods expect
-                com.pwing.guilds.guild.ChunkLocation chunkLocation = new com.pwing.guilds.guild.ChunkLocation(
-                    clickedChunk.getWorld().getName(), clickedChunk.getX(), clickedChunk.getZ());
-                
+                // Route through the manager so the claim index stays in sync
                 if (guild.isChunkClaimed(clickedChunk)) {
                     // Unclaim the chunk
-                    if (guild.unclaimChunk(chunkLocation)) {
+                    if (plugin.getGuildManager().unclaimChunk(guild, clickedChunk)) {
                         player.sendMessage("Chunk unclaimed successfully!");
                     } else {
                         player.sendMessage("Failed to unclaim chunk.");
                     }
                 } else {
                     // Claim the chunk
-                    if (guild.claimChunk(chunkLocation)) {
+                    if (plugin.getGuildManager().claimChunk(guild, clickedChunk)) {
                         player.sendMessage("Chunk claimed successfully!");
                     } else {
                         player.sendMessage("Failed to claim chunk. Check if you have enough claim slots.");
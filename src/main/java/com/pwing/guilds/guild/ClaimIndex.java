@@ -0,0 +1,199 @@
+package com.pwing.guilds.guild;
+
+import com.pwing.guilds.util.LongObjectMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Per-world index of claimed chunks to their owning guild.
+ * Chunks are keyed by their packed (x, z) coordinates so lookups from the
+ * protection and territory hot paths do not allocate.
+ * <p>
+ * Writes happen on the main thread only. Reads are lock-free from any thread:
+ * they run optimistically and only fall back to a read lock when a write
+ * overlapped them, so async chat and storage threads never see a torn table.
+ */
+public class ClaimIndex {
+    private final Map<String, LongObjectMap<Guild>> worlds = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private volatile int size;
+
+    /**
+     * Packs chunk coordinates into a single long key
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The packed key
+     */
+    public static long pack(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the chunk x coordinate from a packed key
+     * @param key The packed key
+     * @return The chunk x coordinate
+     */
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Extracts the chunk z coordinate from a packed key
+     * @param key The packed key
+     * @return The chunk z coordinate
+     */
+    public static int unpackZ(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Gets the guild owning a chunk
+     * @param world The world the chunk is in
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The owning guild, or null if the chunk is unclaimed
+     */
+    public Guild get(World world, int chunkX, int chunkZ) {
+        return get(world.getName(), chunkX, chunkZ);
+    }
+
+    /**
+     * Gets the guild owning a chunk
+     * @param worldName The name of the world the chunk is in
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The owning guild, or null if the chunk is unclaimed
+     */
+    public Guild get(String worldName, int chunkX, int chunkZ) {
+        LongObjectMap<Guild> claims = worlds.get(worldName);
+        if (claims == null) {
+            return null;
+        }
+        long key = pack(chunkX, chunkZ);
+        long stamp = lock.tryOptimisticRead();
+        Guild guild = claims.get(key);
+        if (lock.validate(stamp)) {
+            return guild;
+        }
+        stamp = lock.readLock();
+        try {
+            return claims.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the guild owning the chunk containing a location
+     * Uses block coordinates so the chunk does not need to be loaded
+     * @param location The location to check
+     * @return The owning guild, or null if the chunk is unclaimed
+     */
+    public Guild get(Location location) {
+        World world = location.getWorld();
+        if (world == null) {
+            return null;
+        }
+        return get(world.getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Gets the guild owning a chunk
+     * @param chunk The chunk location
+     * @return The owning guild, or null if the chunk is unclaimed
+     */
+    public Guild get(ChunkLocation chunk) {
+        return get(chunk.getWorldName(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Records a guild as the owner of a chunk
+     * @param chunk The chunk location
+     * @param guild The owning guild
+     * @return The previous owner, or null if the chunk was unclaimed
+     */
+    public Guild put(ChunkLocation chunk, Guild guild) {
+        LongObjectMap<Guild> claims = worlds.computeIfAbsent(chunk.getWorldName(), k -> new LongObjectMap<>());
+        long stamp = lock.writeLock();
+        try {
+            Guild previous = claims.put(pack(chunk.getX(), chunk.getZ()), guild);
+            if (previous == null) {
+                size++;
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the owner of a chunk
+     * @param chunk The chunk location
+     * @return The removed owner, or null if the chunk was unclaimed
+     */
+    public Guild remove(ChunkLocation chunk) {
+        LongObjectMap<Guild> claims = worlds.get(chunk.getWorldName());
+        if (claims == null) {
+            return null;
+        }
+        long stamp = lock.writeLock();
+        try {
+            Guild removed = claims.remove(pack(chunk.getX(), chunk.getZ()));
+            if (removed != null) {
+                size--;
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes every chunk owned by a guild
+     * @param guild The guild whose claims should be removed
+     */
+    public void removeAll(Guild guild) {
+        long stamp = lock.writeLock();
+        try {
+            for (LongObjectMap<Guild> claims : worlds.values()) {
+                size -= claims.removeIf(owner -> owner == guild);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Checks whether a chunk is claimed
+     * @param chunk The chunk location
+     * @return true if any guild owns the chunk
+     */
+    public boolean isClaimed(ChunkLocation chunk) {
+        return get(chunk) != null;
+    }
+
+    /**
+     * Gets the total number of indexed claims across all worlds
+     * @return Claim count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all claims from the index
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            worlds.clear();
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
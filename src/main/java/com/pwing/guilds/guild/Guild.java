@@ -2,9 +2,11 @@ package com.pwing.guilds.guild;
 
 import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.perks.GuildPerks;
+import com.pwing.guilds.storage.GuildJournal;
 import com.pwing.guilds.storage.GuildStorage;
 import com.pwing.guilds.alliance.AllianceManager;
 import com.pwing.guilds.api.*;
+import com.pwing.guilds.compat.ServerAdapter;
 import com.pwing.guilds.alliance.Alliance;
 
 import org.bukkit.inventory.ItemStack;
@@ -16,7 +18,7 @@ import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.configuration.serialization.SerializableAs;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SerializableAs("Guild")
 /**
@@ -24,40 +26,56 @@ import java.util.stream.Collectors;
  */
 public class Guild implements ConfigurationSerializable {
     private final PwingGuilds plugin;
-    private String name;
+    private final int id;
+    private volatile String name;
     private final UUID owner;
     private UUID leader;
-    private final Set<UUID> members = new HashSet<>();
-    private final Set<UUID> invites = new HashSet<>();
-    private final Set<ChunkLocation> claimedChunks = new HashSet<>();
-    private final Map<String, GuildHome> homes = new HashMap<>();
-    private GuildPerks perks;
+    // Concurrent so async chat and storage threads can read while the main thread writes
+    private final Set<UUID> members = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> invites = ConcurrentHashMap.newKeySet();
+    private final Set<ChunkLocation> claimedChunks = ConcurrentHashMap.newKeySet();
+    private final Map<String, GuildHome> homes = new ConcurrentHashMap<>();
+    private final GuildPerks perks;
     private int level;
     private long exp;
     private int bonusClaims;
     private Alliance alliance;
     private long lastUpdate;
-    private final Set<UUID> onlineMembers = new HashSet<>();
+    // Kept up to date on join and quit, so messages reach members without a lookup per member
+    private final Set<Player> onlineMembers = ConcurrentHashMap.newKeySet();
+    private final Collection<Player> onlineMembersView = Collections.unmodifiableSet(onlineMembers);
     private boolean pvpEnabled = false;  // Default PvP off in guild territories
-    private final Set<String> builtStructures = new HashSet<>();
+    private final Set<String> builtStructures = ConcurrentHashMap.newKeySet();
     private String tag;
     private String description;
+    private final GuildChangeSet changes = new GuildChangeSet();
+    // Immutable copies shared by snapshots until the collection changes again
+    private volatile Set<UUID> membersCopy;
+    private volatile Set<ChunkLocation> claimsCopy;
+    private volatile Map<String, GuildHome> homesCopy;
+    private volatile Set<String> structuresCopy;
+    // Set once the guild is registered, so loading and restoring are not journaled
+    private volatile GuildJournal journal;
 
     /**
      * Creates a new guild with the specified parameters
      * @param plugin The plugin instance
+     * @param id The permanent id of the guild, see {@link GuildManager#allocateGuildId()}
      * @param name The name of the guild
      * @param owner The UUID of the guild owner
      */
-    public Guild(PwingGuilds plugin, String name, UUID owner) {
+    public Guild(PwingGuilds plugin, int id, String name, UUID owner) {
         this.plugin = plugin;
+        this.id = id;
         this.name = name;
         this.owner = owner;
         this.leader = owner; // Initialize leader as the owner
         this.members.add(owner);
         this.level = 1;
         this.exp = 0;
-        this.perks = new GuildPerks(plugin, this, level);
+        this.perks = new GuildPerks(plugin, this);
+        // A new guild is not in storage yet
+        this.changes.fullSave();
     }
 
     /**
@@ -75,8 +93,18 @@ public class Guild implements ConfigurationSerializable {
      * @return true if successful, false if no invite exists
      */
     public boolean acceptInvite(UUID player) {
-        if (invites.remove(player)) {
-            return members.add(player);
+        if (invites.remove(player) && members.add(player)) {
+            membersCopy = null;
+            changes.memberAdded(player);
+            Player online = Bukkit.getPlayer(player);
+            if (online != null) {
+                setMemberOnline(online, true);
+            }
+            GuildJournal journal = this.journal;
+            if (journal != null) {
+                journal.memberJoined(id, player);
+            }
+            return true;
         }
         return false;
     }
@@ -105,7 +133,11 @@ public class Guild implements ConfigurationSerializable {
      * @return true if the chunk is claimed by this guild
      */
     public boolean isChunkClaimed(Chunk chunk) {
-        return claimedChunks.contains(new ChunkLocation(chunk));
+        GuildManager guildManager = plugin.getGuildManager();
+        if (guildManager == null) {
+            return claimedChunks.contains(new ChunkLocation(chunk));
+        }
+        return guildManager.getGuildAt(chunk.getWorld(), chunk.getX(), chunk.getZ()) == this;
     }
 
     /**
@@ -116,6 +148,14 @@ public class Guild implements ConfigurationSerializable {
     public boolean claimChunk(ChunkLocation chunk) {
         if (canClaim() && isAdjacentToExistingClaim(chunk)) {
             boolean claimed = claimedChunks.add(chunk);
+            if (claimed) {
+                claimsCopy = null;
+                changes.chunkClaimed(chunk);
+                GuildJournal journal = this.journal;
+                if (journal != null) {
+                    journal.chunkClaimed(id, chunk);
+                }
+            }
             if (claimed && plugin.getGuildManager() != null) {
                 plugin.getGuildManager().getStorage().saveGuild(this);
             }
@@ -124,6 +164,145 @@ public class Guild implements ConfigurationSerializable {
         return false;
     }
 
+    /**
+     * Sets the journal that records changes to this guild
+     * @param journal The journal, or null to stop recording
+     */
+    void setJournal(GuildJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Captures the persistent state of the guild for backups
+     * Call on the main thread; the snapshot can then be read from any thread
+     * @return An immutable snapshot without recorded changes
+     */
+    public GuildSnapshot snapshot() {
+        return new GuildSnapshot(this, null);
+    }
+
+    /**
+     * Captures the persistent state of the guild together with the changes
+     * recorded since the last save, leaving the guild with none
+     * Call on the main thread; storage backends write the snapshot off it
+     * @return An immutable snapshot carrying the drained changes
+     */
+    public GuildSnapshot snapshotForSave() {
+        synchronized (changes) {
+            return new GuildSnapshot(this, changes.drain(name));
+        }
+    }
+
+    Set<UUID> copyMembers() {
+        Set<UUID> copy = membersCopy;
+        if (copy == null) {
+            copy = Set.copyOf(members);
+            membersCopy = copy;
+        }
+        return copy;
+    }
+
+    Set<ChunkLocation> copyClaims() {
+        Set<ChunkLocation> copy = claimsCopy;
+        if (copy == null) {
+            copy = Set.copyOf(claimedChunks);
+            claimsCopy = copy;
+        }
+        return copy;
+    }
+
+    Map<String, GuildHome> copyHomes() {
+        Map<String, GuildHome> copy = homesCopy;
+        if (copy == null) {
+            // Locations are mutable, so the snapshot gets its own
+            Map<String, GuildHome> homesByName = new HashMap<>();
+            homes.forEach((key, home) -> homesByName.put(key, new GuildHome(home.getName(), home.getLocation().clone())));
+            copy = Collections.unmodifiableMap(homesByName);
+            homesCopy = copy;
+        }
+        return copy;
+    }
+
+    Set<String> copyStructures() {
+        Set<String> copy = structuresCopy;
+        if (copy == null) {
+            copy = Set.copyOf(builtStructures);
+            structuresCopy = copy;
+        }
+        return copy;
+    }
+
+    /**
+     * Puts back drained changes that could not be persisted
+     * @param failed The changes taken by {@link #snapshotForSave()}
+     */
+    public void restoreChanges(GuildChangeSet failed) {
+        changes.restore(failed);
+    }
+
+    /**
+     * Marks the guild as fully persisted, discarding recorded changes
+     * Called after loading from or writing the whole guild to storage
+     */
+    public void markPersisted() {
+        changes.clear();
+    }
+
+    /**
+     * Checks whether the guild has changes that were not written yet
+     * @return true if a save would write something
+     */
+    public boolean hasUnsavedChanges() {
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Forces the next save to write the whole guild instead of deltas
+     * Used when copying the guild to a different storage backend
+     */
+    public void requestFullSave() {
+        changes.fullSave();
+    }
+
+    /**
+     * Restores a member loaded from storage
+     * Does not fire events, check limits or save
+     * @param player UUID of the member
+     */
+    public void restoreMember(UUID player) {
+        members.add(player);
+        membersCopy = null;
+    }
+
+    /**
+     * Restores a claim loaded from storage
+     * Does not fire events, check adjacency or claim limits, or save
+     * @param chunk The claimed chunk
+     */
+    public void restoreClaim(ChunkLocation chunk) {
+        claimedChunks.add(chunk);
+        claimsCopy = null;
+    }
+
+    /**
+     * Restores a home loaded from storage
+     * Does not fire events or save
+     * @param name The name of the home
+     * @param location The location of the home
+     */
+    public void restoreHome(String name, Location location) {
+        homes.put(name.toLowerCase(), new GuildHome(name, location));
+        homesCopy = null;
+    }
+
+    /**
+     * Restores the PvP setting loaded from storage without saving
+     * @param enabled Whether PvP is enabled in guild territory
+     */
+    public void restorePvPEnabled(boolean enabled) {
+        this.pvpEnabled = enabled;
+    }
+
     private boolean isAdjacentToExistingClaim(ChunkLocation chunk) {
         if (claimedChunks.isEmpty()) {
             return true;
@@ -145,6 +324,12 @@ public class Guild implements ConfigurationSerializable {
     public boolean unclaimChunk(ChunkLocation chunk) {
         boolean unclaimed = claimedChunks.remove(chunk);
         if (unclaimed) {
+            claimsCopy = null;
+            changes.chunkUnclaimed(chunk);
+            GuildJournal journal = this.journal;
+            if (journal != null) {
+                journal.chunkUnclaimed(id, chunk);
+            }
             plugin.getGuildManager().getStorage().saveGuild(this);
         }
         return unclaimed;
@@ -166,32 +351,47 @@ public class Guild implements ConfigurationSerializable {
         int oldLevel = level;
 
         exp += expEvent.getAmount() * perks.getExpMultiplier();
+        changes.fieldsChanged();
 
-        int nextLevel = level + 1;
-        long requiredExp = plugin.getConfig().getLong("guild-levels." + nextLevel + ".exp-required");
+        // A large gain may pass several levels; they are reported as one level up
+        int newLevel = plugin.getLevelTable().getLevelForExp(level, exp);
 
-        if (exp >= requiredExp) {
-            GuildLevelUpEvent levelEvent = new GuildLevelUpEvent(this, oldLevel, nextLevel);
+        if (newLevel > oldLevel) {
+            GuildLevelUpEvent levelEvent = new GuildLevelUpEvent(this, oldLevel, newLevel);
             Bukkit.getPluginManager().callEvent(levelEvent);
 
             if (!levelEvent.isCancelled()) {
-                level = nextLevel;
-                perks = new GuildPerks(plugin, this, level);
+                level = newLevel;
+                journalExpAndLevel(oldExp, oldLevel);
                 return true;
             } else {
                 exp = oldExp;
             }
         }
 
+        journalExpAndLevel(oldExp, oldLevel);
         return false;
     }
 
+    private void journalExpAndLevel(long oldExp, int oldLevel) {
+        GuildJournal journal = this.journal;
+        if (journal != null) {
+            if (exp != oldExp) {
+                journal.expChanged(id, exp);
+            }
+            if (level != oldLevel) {
+                journal.levelChanged(id, level);
+            }
+        }
+    }
+
     /**
      * Adds bonus claim chunks to the guild
      * @param amount The amount of bonus claims to add
      */
     public void addBonusClaims(int amount) {
         this.bonusClaims += amount;
+        changes.fieldsChanged();
     }
 
     /**
@@ -199,7 +399,7 @@ public class Guild implements ConfigurationSerializable {
      * @return true if guild can claim more chunks, false if at limit
      */
     public boolean canClaim() {
-        int maxClaims = plugin.getConfig().getInt("guild-levels." + level + ".max-claims") + bonusClaims;
+        int maxClaims = plugin.getLevelTable().getMaxClaims(level) + bonusClaims;
         return claimedChunks.size() < maxClaims;
     }
 
@@ -216,11 +416,11 @@ public class Guild implements ConfigurationSerializable {
      * @param message The message to broadcast
      */
     public void broadcastMessage(String message) {
-        for (UUID uuid : members) {
-            Player player = Bukkit.getPlayer(uuid);
-            if (player != null && player.isOnline()) {
-                player.sendMessage(message);
-            }
+        ServerAdapter adapter = plugin.getServerAdapter();
+        if (adapter != null) {
+            adapter.broadcast(onlineMembers, message);
+        } else {
+            onlineMembers.forEach(player -> player.sendMessage(message));
         }
     }
 
@@ -250,6 +450,8 @@ public class Guild implements ConfigurationSerializable {
 
         if (!event.isCancelled()) {
             homes.put(name, new GuildHome(name, location));
+            homesCopy = null;
+            changes.homeSet(name);
             return true;
         }
         return false;
@@ -270,7 +472,13 @@ public class Guild implements ConfigurationSerializable {
      * @return true if home was deleted successfully
      */
     public boolean deleteHome(String name) {
-        return homes.remove(name.toLowerCase()) != null;
+        String key = name.toLowerCase();
+        if (homes.remove(key) != null) {
+            homesCopy = null;
+            changes.homeDeleted(key);
+            return true;
+        }
+        return false;
     }
     /**
      * Creates a new guild member
@@ -284,6 +492,16 @@ public class Guild implements ConfigurationSerializable {
         if (!event.isCancelled()) {
             boolean added = members.add(player);
             if (added) {
+                membersCopy = null;
+                changes.memberAdded(player);
+                Player online = Bukkit.getPlayer(player);
+                if (online != null) {
+                    setMemberOnline(online, true);
+                }
+                GuildJournal journal = this.journal;
+                if (journal != null) {
+                    journal.memberJoined(id, player);
+                }
                 plugin.getGuildManager().getStorage().saveGuild(this);
             }
             return added;
@@ -299,6 +517,15 @@ public class Guild implements ConfigurationSerializable {
      */
     public boolean removeMember(UUID player, GuildMemberLeaveEvent.LeaveReason reason) {
         if (members.remove(player)) {
+            membersCopy = null;
+            changes.memberRemoved(player);
+            if (onlineMembers.removeIf(online -> online.getUniqueId().equals(player))) {
+                invalidateAllianceRecipients();
+            }
+            GuildJournal journal = this.journal;
+            if (journal != null) {
+                journal.memberLeft(id, player);
+            }
             Bukkit.getPluginManager().callEvent(new GuildMemberLeaveEvent(this, player, reason));
             plugin.getGuildManager().getStorage().saveGuild(this);
             return true;
@@ -307,39 +534,40 @@ public class Guild implements ConfigurationSerializable {
     }
     
 
+    /**
+     * Changes the name and records the rename for storage
+     * Only GuildManager calls this, so its name registries stay in sync
+     * @param newName The new name
+     */
+    void applyRename(String newName) {
+        synchronized (changes) {
+            changes.renamed(name);
+            name = newName;
+        }
+        GuildJournal journal = this.journal;
+        if (journal != null) {
+            journal.guildRenamed(id, newName);
+        }
+    }
+
     /**
      * Sets the guild's name
      * @param newName New name for guild
-     * @return true if name was changed successfully
+     * @return true if name was changed successfully, false if cancelled or taken
      */
     public boolean setName(String newName) {
         GuildRenameEvent event = new GuildRenameEvent(this, this.name, newName);
         Bukkit.getPluginManager().callEvent(event);
 
         if (!event.isCancelled()) {
-            plugin.getGuildManager().updateGuildName(this, event.getNewName());
-            this.name = event.getNewName(); // Update the guild's name
-            plugin.getGuildManager().getStorage().saveGuild(this); // Save changes
-            return true;
+            return plugin.getGuildManager().updateGuildName(this, event.getNewName());
         }
         return false;
     }
 
     @Override
     public Map<String, Object> serialize() {
-        Map<String, Object> serialized = new HashMap<>();
-        serialized.put("name", name);
-        serialized.put("owner", owner.toString());
-        serialized.put("level", level);
-        serialized.put("exp", exp);
-        serialized.put("bonus-claims", bonusClaims);
-        serialized.put("members", members.stream().map(UUID::toString).collect(Collectors.toList()));
-        serialized.put("claims", claimedChunks.stream().map(ChunkLocation::serialize).collect(Collectors.toList()));
-        serialized.put("homes", homes);
-        serialized.put("pvp-enabled", pvpEnabled);
-        serialized.put("builtStructures", builtStructures != null ? builtStructures : new ArrayList<>());
-
-        return serialized;
+        return snapshot().serialize();
     }
 
     private Map<String, Object> serializeLocation(Location loc) {
@@ -355,6 +583,8 @@ public class Guild implements ConfigurationSerializable {
 
     /**
      * Deserializes guild data from configuration
+     * Data written before guilds had ids gets the id of the loaded guild with
+     * the same name, or a newly allocated one
      * @param plugin Plugin instance
      * @param data Map of serialized data
      * @return The deserialized guild
@@ -362,7 +592,17 @@ public class Guild implements ConfigurationSerializable {
     public static Guild deserialize(PwingGuilds plugin, Map<String, Object> data) {
         String name = (String) data.get("name");
         UUID owner = UUID.fromString((String) data.get("owner"));
-        Guild guild = new Guild(plugin, name, owner);
+        Object idObj = data.get("id");
+        int id;
+        if (idObj instanceof Number) {
+            id = ((Number) idObj).intValue();
+        } else {
+            GuildManager guildManager = plugin.getGuildManager();
+            id = guildManager.getGuild(name)
+                    .map(Guild::getId)
+                    .orElseGet(guildManager::allocateGuildId);
+        }
+        Guild guild = new Guild(plugin, id, name, owner);
 
         guild.setLevel((Integer) data.get("level"));
         
@@ -425,6 +665,7 @@ public class Guild implements ConfigurationSerializable {
                 if (homeData instanceof Map) {
                     GuildHome home = GuildHome.deserialize((Map<String, Object>) homeData);
                     guild.homes.put(homeName.toLowerCase(), home);
+                    guild.homesCopy = null;
                 } else if (homeData instanceof String) {
                     // Handle old format
                     String[] parts = ((String) homeData).split(",");
@@ -458,18 +699,30 @@ public class Guild implements ConfigurationSerializable {
 
         guild.setPvPEnabled((Boolean) data.getOrDefault("pvp-enabled", false));
 
+        Object tagObj = data.get("tag");
+        if (tagObj instanceof String) {
+            guild.setTag((String) tagObj);
+        }
+
         // Fix the builtStructures loading
         Object builtStructuresObj = data.get("builtStructures");
         if (builtStructuresObj instanceof List) {
             @SuppressWarnings("unchecked")
             List<String> builtStructuresList = (List<String>) builtStructuresObj;
             guild.builtStructures.addAll(builtStructuresList);
+            guild.structuresCopy = null;
         }
 
         return guild;
     }
 
     // Getters
+    /**
+     * Gets the permanent id of this guild
+     * Unlike the name it never changes, so storage and registries are keyed by it
+     * @return The guild id
+     */
+    public int getId() { return id; }
     /** 
      * Gets the name of this guild
      * The name uniquely identifies this guild across the server
@@ -544,6 +797,7 @@ public class Guild implements ConfigurationSerializable {
      */
     public void setPvPEnabled(boolean enabled) {
         this.pvpEnabled = enabled;
+        changes.fieldsChanged();
         plugin.getGuildManager().getStorage().saveGuild(this);
     }
 
@@ -574,18 +828,38 @@ public class Guild implements ConfigurationSerializable {
      */
     public void setLevel(int level) {
         this.level = level;
-        this.perks = new GuildPerks(plugin, this, level);
+        changes.fieldsChanged();
+        GuildJournal journal = this.journal;
+        if (journal != null) {
+            journal.levelChanged(id, level);
+        }
     }
     /**
      * Sets the guild's experience points
      * @param exp New experience amount
      */
-    public void setExp(long exp) { this.exp = exp; }
+    public void setExp(long exp) {
+        this.exp = exp;
+        changes.fieldsChanged();
+        GuildJournal journal = this.journal;
+        if (journal != null) {
+            journal.expChanged(id, exp);
+        }
+    }
     /**
      * Sets the guild's current alliance
      * @param alliance Alliance to set
      */
-    public void setAlliance(Alliance alliance) { this.alliance = alliance; }
+    public void setAlliance(Alliance alliance) {
+        Alliance previous = this.alliance;
+        this.alliance = alliance;
+        if (previous != null) {
+            previous.invalidateRecipients();
+        }
+        if (alliance != null) {
+            alliance.invalidateRecipients();
+        }
+    }
 
     /**
      * Checks if the guild has built the specified structure.
@@ -601,47 +875,71 @@ public class Guild implements ConfigurationSerializable {
      * @param structureName The name of the structure.
      */
     public void addBuiltStructure(String structureName) {
-        builtStructures.add(structureName);
+        if (builtStructures.add(structureName)) {
+            structuresCopy = null;
+            changes.fieldsChanged();
+        }
     }
 
     /**
-     * Gets all items stored in guild storage
-     * @return Array of stored items
+     * Gets all items stored in guild storage if they are loaded
+     * Never blocks; see {@link com.pwing.guilds.storage.GuildStorageManager#loadGuildStorage(int)}
+     * @return Array of stored items, or null if not loaded or empty
      */
     public ItemStack[] getStorageContents() {
-        return plugin.getStorageManager().getGuildStorage(this.name);
+        return plugin.getStorageManager().getGuildStorage(this.id);
     }
 
     /**
      * Gets all online guild members
-     * @return List of online players in guild
+     * @return Live, unmodifiable view of the online players in the guild
      */
-    public List<Player> getOnlineMembers() {
-        return members.stream()
-                .map(Bukkit::getPlayer)
-                .filter(player -> player != null && player.isOnline())
-                .collect(Collectors.toList());
+    public Collection<Player> getOnlineMembers() {
+        return onlineMembersView;
+    }
+
+    /**
+     * Marks a member as online or offline
+     * Called on join and quit; does nothing for players outside the guild
+     * @param player The member
+     * @param online Whether the member is online
+     */
+    public void setMemberOnline(Player player, boolean online) {
+        boolean changed;
+        if (online) {
+            changed = members.contains(player.getUniqueId()) && onlineMembers.add(player);
+        } else {
+            changed = onlineMembers.remove(player);
+        }
+        if (changed) {
+            invalidateAllianceRecipients();
+        }
+    }
+
+    private void invalidateAllianceRecipients() {
+        Alliance alliance = this.alliance;
+        if (alliance != null) {
+            alliance.invalidateRecipients();
+        }
     }
 
     /**
      * Updates the member list and validates all members
+     * Rebuilds the online members from the server, e.g. after guilds were loaded
      */
     public void updateMemberList() {
         // Update last activity timestamp
         this.lastUpdate = System.currentTimeMillis();
-        
+
         // Update online status for members
+        onlineMembers.clear();
         for (UUID memberId : members) {
             Player player = Bukkit.getPlayer(memberId);
             if (player != null && player.isOnline()) {
-                onlineMembers.add(memberId);
-            } else {
-                onlineMembers.remove(memberId);
+                onlineMembers.add(player);
             }
         }
-        
-        // Save changes
-        plugin.getGuildManager().getStorage().saveGuild(this);
+        invalidateAllianceRecipients();
     }
 
     /**
@@ -695,6 +993,7 @@ public class Guild implements ConfigurationSerializable {
      */
     public void setTag(String tag) {
         this.tag = tag;
+        changes.fieldsChanged();
     }
 
     /**
@@ -0,0 +1,222 @@
+package com.pwing.guilds.guild;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Changes made to a guild since it was last persisted.
+ * Opposite operations cancel out, so an added-then-removed member is never written.
+ * Recorded on the main thread and drained by storage threads, so every method is synchronized.
+ */
+public class GuildChangeSet {
+    private final Set<UUID> addedMembers = new HashSet<>();
+    private final Set<UUID> removedMembers = new HashSet<>();
+    private final Set<ChunkLocation> claimedChunks = new HashSet<>();
+    private final Set<ChunkLocation> unclaimedChunks = new HashSet<>();
+    private final Set<String> setHomes = new HashSet<>();
+    private final Set<String> deletedHomes = new HashSet<>();
+    private boolean fieldsChanged;
+    private boolean fullSave;
+    private String renamedFrom;
+    private String guildName;
+
+    synchronized void memberAdded(UUID member) {
+        if (!removedMembers.remove(member)) {
+            addedMembers.add(member);
+        }
+    }
+
+    synchronized void memberRemoved(UUID member) {
+        if (!addedMembers.remove(member)) {
+            removedMembers.add(member);
+        }
+    }
+
+    synchronized void chunkClaimed(ChunkLocation chunk) {
+        if (!unclaimedChunks.remove(chunk)) {
+            claimedChunks.add(chunk);
+        }
+    }
+
+    synchronized void chunkUnclaimed(ChunkLocation chunk) {
+        if (!claimedChunks.remove(chunk)) {
+            unclaimedChunks.add(chunk);
+        }
+    }
+
+    synchronized void homeSet(String name) {
+        deletedHomes.remove(name);
+        setHomes.add(name);
+    }
+
+    synchronized void homeDeleted(String name) {
+        setHomes.remove(name);
+        deletedHomes.add(name);
+    }
+
+    synchronized void fieldsChanged() {
+        fieldsChanged = true;
+    }
+
+    synchronized void fullSave() {
+        fullSave = true;
+    }
+
+    synchronized void renamed(String oldName) {
+        // Keep the name storage still knows the guild by across repeated renames
+        if (renamedFrom == null) {
+            renamedFrom = oldName;
+        }
+    }
+
+    /**
+     * Moves all recorded changes into a new change set and clears this one
+     * @param guildName The guild's name at the moment of draining
+     * @return The drained changes
+     */
+    synchronized GuildChangeSet drain(String guildName) {
+        GuildChangeSet drained = new GuildChangeSet();
+        drained.mergeFrom(this);
+        drained.guildName = guildName;
+        clear();
+        return drained;
+    }
+
+    /**
+     * Puts back changes that failed to persist, ahead of anything recorded since
+     * @param failed The changes returned by {@link #drain(String)}
+     */
+    public synchronized void restore(GuildChangeSet failed) {
+        GuildChangeSet newer = new GuildChangeSet();
+        newer.mergeFrom(this);
+        clear();
+        mergeFrom(failed);
+        mergeFrom(newer);
+    }
+
+    /**
+     * Forgets all recorded changes, e.g. after the guild was loaded or written in full
+     */
+    public synchronized void clear() {
+        addedMembers.clear();
+        removedMembers.clear();
+        claimedChunks.clear();
+        unclaimedChunks.clear();
+        setHomes.clear();
+        deletedHomes.clear();
+        fieldsChanged = false;
+        fullSave = false;
+        renamedFrom = null;
+    }
+
+    private void mergeFrom(GuildChangeSet other) {
+        synchronized (other) {
+            other.addedMembers.forEach(this::memberAdded);
+            other.removedMembers.forEach(this::memberRemoved);
+            other.claimedChunks.forEach(this::chunkClaimed);
+            other.unclaimedChunks.forEach(this::chunkUnclaimed);
+            other.setHomes.forEach(this::homeSet);
+            other.deletedHomes.forEach(this::homeDeleted);
+            fieldsChanged |= other.fieldsChanged;
+            fullSave |= other.fullSave;
+            if (other.renamedFrom != null) {
+                renamed(other.renamedFrom);
+            }
+        }
+    }
+
+    /**
+     * Checks whether anything needs to be written
+     * @return true if no changes were recorded
+     */
+    public synchronized boolean isEmpty() {
+        return !fullSave && !fieldsChanged && getRenamedFrom() == null
+                && addedMembers.isEmpty() && removedMembers.isEmpty()
+                && claimedChunks.isEmpty() && unclaimedChunks.isEmpty()
+                && setHomes.isEmpty() && deletedHomes.isEmpty();
+    }
+
+    /**
+     * Gets the name of the guild when these changes were drained
+     * Deltas must be written under this name even if the guild was renamed since
+     * @return The guild name, or null if the changes were never drained
+     */
+    public synchronized String getGuildName() {
+        return guildName;
+    }
+
+    /**
+     * Gets the name storage knew the guild by before it was renamed
+     * @return The previous name, or null if the guild was not renamed
+     */
+    public synchronized String getRenamedFrom() {
+        // Renaming back to the stored name is not a rename
+        return renamedFrom != null && !renamedFrom.equals(guildName) ? renamedFrom : null;
+    }
+
+    /**
+     * Checks whether the whole guild must be written, e.g. because it is not stored yet
+     * @return true if deltas cannot be applied
+     */
+    public synchronized boolean isFullSave() {
+        return fullSave;
+    }
+
+    /**
+     * Checks whether level, exp, bonus claims, PvP, structures or tag changed
+     * @return true if the main guild row must be written
+     */
+    public synchronized boolean isFieldsChanged() {
+        return fieldsChanged;
+    }
+
+    /**
+     * Gets members added since the last save
+     * @return Added member UUIDs
+     */
+    public synchronized Set<UUID> getAddedMembers() {
+        return Collections.unmodifiableSet(new HashSet<>(addedMembers));
+    }
+
+    /**
+     * Gets members removed since the last save
+     * @return Removed member UUIDs
+     */
+    public synchronized Set<UUID> getRemovedMembers() {
+        return Collections.unmodifiableSet(new HashSet<>(removedMembers));
+    }
+
+    /**
+     * Gets chunks claimed since the last save
+     * @return Claimed chunks
+     */
+    public synchronized Set<ChunkLocation> getClaimedChunks() {
+        return Collections.unmodifiableSet(new HashSet<>(claimedChunks));
+    }
+
+    /**
+     * Gets chunks unclaimed since the last save
+     * @return Unclaimed chunks
+     */
+    public synchronized Set<ChunkLocation> getUnclaimedChunks() {
+        return Collections.unmodifiableSet(new HashSet<>(unclaimedChunks));
+    }
+
+    /**
+     * Gets homes created or moved since the last save
+     * @return Home keys
+     */
+    public synchronized Set<String> getSetHomes() {
+        return Collections.unmodifiableSet(new HashSet<>(setHomes));
+    }
+
+    /**
+     * Gets homes deleted since the last save
+     * @return Home keys
+     */
+    public synchronized Set<String> getDeletedHomes() {
+        return Collections.unmodifiableSet(new HashSet<>(deletedHomes));
+    }
+}
@@ -12,8 +12,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
+import com.pwing.guilds.storage.GuildJournal;
 import com.pwing.guilds.storage.GuildStorage;
+import com.pwing.guilds.storage.WriteBehindGuildStorage;
+import com.pwing.guilds.territory.TerritoryTracker;
 import com.pwing.guilds.integrations.WorldGuardHook;
 import com.pwing.guilds.alliance.Alliance;
 import com.pwing.guilds.api.GuildClaimChunkEvent;
@@ -43,14 +49,20 @@ import net.citizensnpcs.api.npc.NPC;
 /**
  * Manages all guild-related operations and data within the plugin.
  * Handles creating, deleting, and managing guilds as well as their storage.
+ * <p>
+ * Registries are mutated on the main thread only but may be read from any
+ * thread, so async chat and storage code can look up guilds without locking.
  */
 public class GuildManager {
     private final PwingGuilds plugin;
-    private final Map<String, Guild> guilds;
-    private final Map<UUID, Guild> playerGuilds = new HashMap<>();
-    private final Map<ChunkLocation, Guild> claimedChunks = new HashMap<>();
+    private final Map<Integer, Guild> guilds;
+    private final Map<UUID, Guild> playerGuilds = new ConcurrentHashMap<>();
+    private final ClaimIndex claimIndex = new ClaimIndex();
+    private final GuildNameIndex nameIndex = new GuildNameIndex();
+    private final AtomicInteger nextGuildId = new AtomicInteger(1);
     private final GuildStorage storage;
     private final WorldGuardHook worldGuardHook;
+    private GuildJournal journal;
 
     /**
      * Creates a new GuildManager instance
@@ -61,8 +73,10 @@ public class GuildManager {
     public GuildManager(PwingGuilds plugin, GuildStorage storage, WorldGuardHook worldGuardHook) {
         this.plugin = plugin;
         this.storage = storage;
-        this.guilds = new HashMap<>();
+        this.guilds = new ConcurrentHashMap<>();
         this.worldGuardHook = worldGuardHook;
+        // Read before any guild is loaded, as guilds stored without an id are numbered during loading
+        this.nextGuildId.set(Math.max(1, storage.loadNextGuildId()));
     }
 
     /**
@@ -74,22 +88,71 @@ public class GuildManager {
     }
 
     /**
-     * Initializes the guild manager and loads all guilds from storage
+     * Gets a name that no indexed guild uses, based on a clashing name
+     * @param name The clashing guild name
+     * @param id The id of the guild to rename
+     * @return A free guild name
      */
-    public void initialize() {
-        Set<Guild> loadedGuilds = storage.loadAllGuilds();
-        loadedGuilds.forEach(guild -> {
-            guilds.put(guild.getName(), guild);
+    private String findFreeName(String name, int id) {
+        String candidate = name + "-" + id;
+        for (int i = 2; nameIndex.contains(candidate); i++) {
+            candidate = name + "-" + id + "-" + i;
+        }
+        return candidate;
+    }
+
+    /**
+     * Initializes the guild manager with the guilds loaded from storage
+     * @param loadedGuilds Guilds loaded at startup
+     */
+    public void initialize(Set<Guild> loadedGuilds) {
+        long start = System.currentTimeMillis();
+        // Look each world up once instead of once per claim
+        Map<String, Boolean> worldLoaded = new HashMap<>();
+        Map<String, Integer> skippedClaims = new TreeMap<>();
+        for (Guild guild : loadedGuilds) {
+            Guild duplicate = guilds.put(guild.getId(), guild);
+            if (duplicate != null && duplicate != guild) {
+                plugin.getLogger().warning("Guilds " + duplicate.getName() + " and " + guild.getName() + " share id " + guild.getId());
+            }
+            reserveGuildId(guild.getId());
+            Guild clash = nameIndex.putIfAbsent(guild);
+            if (clash != null && clash != guild) {
+                // Keep the first guild findable and give the later one a free name
+                String oldName = guild.getName();
+                String newName = findFreeName(oldName, guild.getId());
+                guild.applyRename(newName);
+                nameIndex.put(guild);
+                storage.saveGuild(guild);
+                plugin.getLogger().warning("Guild " + oldName + " (id " + guild.getId() + ") has the same name as "
+                        + clash.getName() + " ignoring case and was renamed to " + newName);
+            }
             guild.getMembers().forEach(member -> playerGuilds.put(member, guild));
-            guild.getClaimedChunks().forEach(chunk -> {
-                if (Bukkit.getWorld(chunk.getWorld().getName()) == null) {
-                    plugin.getLogger().warning("Invalid world name in claim: " + chunk.getWorld().getName() + "," + chunk.getX() + "," + chunk.getZ());
+            // Players may already be online, e.g. after a plugin reload
+            guild.updateMemberList();
+            for (ChunkLocation chunk : guild.getClaimedChunks()) {
+                String worldName = chunk.getWorldName();
+                if (worldLoaded.computeIfAbsent(worldName, name -> Bukkit.getWorld(name) != null)) {
+                    claimIndex.put(chunk, guild);
                 } else {
-                    claimedChunks.put(chunk, guild);
+                    skippedClaims.merge(worldName, 1, Integer::sum);
                 }
-            });
-        });
-        plugin.getLogger().info("Loaded " + guilds.size() + " guilds with " + playerGuilds.size() + " members");
+            }
+        }
+        persistNextGuildId();
+        skippedClaims.forEach((worldName, count) ->
+                plugin.getLogger().warning("Skipped " + count + " claims in unknown world: " + worldName));
+        plugin.getLogger().info("Loaded " + guilds.size() + " guilds with " + playerGuilds.size() + " members and "
+                + claimIndex.size() + " claims, indexed in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Sets the journal that records guild changes, attaching it to every registered guild
+     * @param journal The journal, or null to stop recording
+     */
+    public void setJournal(GuildJournal journal) {
+        this.journal = journal;
+        guilds.values().forEach(guild -> guild.setJournal(journal));
     }
 
     /**
@@ -103,13 +166,19 @@ public class GuildManager {
             return false;
         }
 
-        if (guilds.containsKey(name)) {
+        if (nameIndex.contains(name)) {
             return false;
         }
 
-        Guild guild = new Guild(plugin, name, owner);
-        guilds.put(name, guild);
+        Guild guild = new Guild(plugin, allocateGuildId(), name, owner);
+        guilds.put(guild.getId(), guild);
+        nameIndex.put(guild);
         playerGuilds.put(owner, guild);
+        guild.updateMemberList();
+        if (journal != null) {
+            journal.guildCreated(guild.getId(), name, owner);
+            guild.setJournal(journal);
+        }
         storage.saveGuild(guild);
         Bukkit.getPluginManager().callEvent(new GuildCreateEvent(guild));
         return true;
@@ -120,23 +189,46 @@ public class GuildManager {
      * @param guild Guild to add
      */
     public void addGuild(Guild guild) {
-        guilds.put(guild.getName(), guild);
+        reserveGuildId(guild.getId());
+        persistNextGuildId();
+        Guild previous = guilds.put(guild.getId(), guild);
+        if (previous != null && previous != guild) {
+            // Restoring a backup replaces the live guild with the same id
+            nameIndex.remove(previous.getName(), previous);
+            claimIndex.removeAll(previous);
+            playerGuilds.values().removeIf(member -> member == previous);
+            previous.setJournal(null);
+            // Its unwritten saves would otherwise land after the restored guild's and undo it
+            if (storage instanceof WriteBehindGuildStorage) {
+                ((WriteBehindGuildStorage) storage).discard(previous);
+            }
+        }
+        guild.setJournal(journal);
+        nameIndex.put(guild);
         guild.getMembers().forEach(member -> playerGuilds.put(member, guild));
-        guild.getClaimedChunks().forEach(chunk -> claimedChunks.put(chunk, guild));
+        guild.getClaimedChunks().forEach(chunk -> claimIndex.put(chunk, guild));
+        guild.updateMemberList();
         storage.saveGuild(guild);
     }
 
     /**
      * Deletes a guild by its name.
-     * @param name The name of the guild to delete.
+     * @param name The name of the guild to delete, matched case-insensitively.
      */
     public void deleteGuild(String name) {
-        Guild guild = guilds.remove(name);
+        Guild guild = getGuild(name).orElse(null);
         if (guild != null) {
+            guilds.remove(guild.getId(), guild);
+            nameIndex.remove(guild.getName(), guild);
             Bukkit.getPluginManager().callEvent(new GuildDeleteEvent(guild));
             guild.getMembers().forEach(playerGuilds::remove);
-            guild.getClaimedChunks().forEach(claimedChunks::remove);
-            storage.deleteGuild(name);
+            claimIndex.removeAll(guild);
+            refreshTerritory(guild);
+            storage.deleteGuild(guild);
+            guild.setJournal(null);
+            if (journal != null) {
+                journal.guildDeleted(guild.getId());
+            }
         }
     }
 
@@ -154,7 +246,7 @@ public class GuildManager {
         ChunkLocation location = new ChunkLocation(chunk);
     
         // Validate if chunk is already claimed
-        if (claimedChunks.containsKey(location)) {
+        if (claimIndex.get(chunk.getWorld(), chunk.getX(), chunk.getZ()) != null) {
             return false;
         }
     
@@ -174,8 +266,11 @@ public class GuildManager {
             return false;
         }
 
-        claimedChunks.put(location, guild);
-        guild.claimChunk(location);
+        if (!guild.claimChunk(location)) {
+            return false;
+        }
+        claimIndex.put(location, guild);
+        refreshTerritory(location);
         storage.saveGuild(guild);
         return true;
     }
@@ -187,9 +282,10 @@ public class GuildManager {
      * @return true if the chunk was unclaimed, false otherwise.
      */
     public boolean unclaimChunk(Guild guild, Chunk chunk) {
-        ChunkLocation location = new ChunkLocation(chunk);
-        if (claimedChunks.get(location) == guild) {
-            claimedChunks.remove(location);
+        if (claimIndex.get(chunk.getWorld(), chunk.getX(), chunk.getZ()) == guild) {
+            ChunkLocation location = new ChunkLocation(chunk);
+            claimIndex.remove(location);
+            refreshTerritory(location);
             boolean success = guild.unclaimChunk(location);
             if (success) {
                 storage.saveGuild(guild);
@@ -206,8 +302,7 @@ public class GuildManager {
      * @return true if player can interact, false otherwise
      */
     public boolean canInteract(UUID player, Chunk chunk) {
-        ChunkLocation location = new ChunkLocation(chunk);
-        Guild guild = claimedChunks.get(location);
+        Guild guild = claimIndex.get(chunk.getWorld(), chunk.getX(), chunk.getZ());
         return guild == null || guild.isMember(player);
     }
 
@@ -217,7 +312,35 @@ public class GuildManager {
      * @return Optional containing the owning guild if found
      */
     public Optional<Guild> getGuildByChunk(Chunk chunk) {
-        return Optional.ofNullable(claimedChunks.get(new ChunkLocation(chunk)));
+        return Optional.ofNullable(claimIndex.get(chunk.getWorld(), chunk.getX(), chunk.getZ()));
+    }
+
+    /**
+     * Gets the guild owning a chunk without allocating
+     * @param world The world the chunk is in
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The owning guild, or null if the chunk is unclaimed
+     */
+    public Guild getGuildAt(World world, int chunkX, int chunkZ) {
+        return claimIndex.get(world, chunkX, chunkZ);
+    }
+
+    /**
+     * Gets the guild owning the chunk containing a location without loading the chunk
+     * @param location The location to check
+     * @return The owning guild, or null if the chunk is unclaimed
+     */
+    public Guild getGuildAt(Location location) {
+        return claimIndex.get(location);
+    }
+
+    /**
+     * Gets the index of claimed chunks to their owning guilds
+     * @return The claim index
+     */
+    public ClaimIndex getClaimIndex() {
+        return claimIndex;
     }
 
     /**
@@ -237,7 +360,7 @@ public class GuildManager {
      * @return true if the invite was successful, false otherwise.
      */
     public boolean invitePlayer(String guildName, UUID inviter, UUID invited) {
-        Guild guild = guilds.get(guildName);
+        Guild guild = getGuild(guildName).orElse(null);
         if (guild != null && guild.isMember(inviter)) {
             boolean success = guild.invite(invited);
             if (success) {
@@ -255,7 +378,7 @@ public class GuildManager {
      * @return true if successful, false if invite doesn't exist
      */
     public boolean acceptInvite(String guildName, UUID player) {
-        Guild guild = guilds.get(guildName);
+        Guild guild = getGuild(guildName).orElse(null);
         if (guild != null && guild.acceptInvite(player)) {
             playerGuilds.put(player, guild);
             storage.saveGuild(guild);
@@ -272,7 +395,7 @@ public class GuildManager {
      * @return true if the kick was successful, false otherwise.
      */
     public boolean kickMember(String guildName, UUID kicker, UUID kicked) {
-        Guild guild = guilds.get(guildName);
+        Guild guild = getGuild(guildName).orElse(null);
         if (guild != null && guild.getLeader().equals(kicker)) {
             if (guild.removeMember(kicked, GuildMemberLeaveEvent.LeaveReason.KICKED)) {
                 playerGuilds.remove(kicked);
@@ -292,34 +415,104 @@ public class GuildManager {
     }
 
     /**
-     * Gets a guild by name
+     * Gets a guild by name, ignoring case
      * @param name The name of the guild
      * @return Optional containing the guild if found
      */
     public Optional<Guild> getGuild(String name) {
-        return Optional.ofNullable(guilds.get(name));
+        return Optional.ofNullable(nameIndex.get(name));
+    }
+
+    /**
+     * Gets a guild by its permanent id
+     * @param id The guild id
+     * @return Optional containing the guild if found
+     */
+    public Optional<Guild> getGuildById(int id) {
+        return Optional.ofNullable(guilds.get(id));
+    }
+
+    /**
+     * Allocates an id for a new guild
+     * Ids are never reused, even after the guild is deleted, as the next id is stored
+     * @return A guild id no guild has had before
+     */
+    public int allocateGuildId() {
+        int id = nextGuildId.getAndIncrement();
+        persistNextGuildId();
+        return id;
+    }
+
+    /**
+     * Makes sure an id loaded from storage is never allocated again
+     * Not stored until the guilds are registered, so loading does not write once per guild
+     * @param id The id of a stored guild
+     */
+    public void reserveGuildId(int id) {
+        nextGuildId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private void persistNextGuildId() {
+        int nextId = nextGuildId.get();
+        Runnable save = () -> {
+            try {
+                storage.saveNextGuildId(nextId);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save the next guild id " + nextId, e);
+            }
+        };
+        // Storage ignores a lower value, so saves finishing out of order are harmless
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, save);
+        } else {
+            save.run();
+        }
+    }
+
+    /**
+     * Gets the names of guilds starting with a prefix, ignoring case
+     * @param prefix The prefix typed so far
+     * @param limit Maximum number of names to return
+     * @return Matching guild names in alphabetical order
+     */
+    public List<String> getGuildNamesStartingWith(String prefix, int limit) {
+        return nameIndex.getNamesStartingWith(prefix, limit);
     }
 
     /**
      * Updates the name of a guild.
+     * Registries and storage are keyed by the guild id, so only the name index
+     * changes and storage receives the rename as a single row update.
      * @param guild The guild to update.
      * @param newName The new name for the guild.
+     * @return true if the guild was renamed, false if another guild has that name
      */
-    public void updateGuildName(Guild guild, String newName) {
-        guilds.remove(guild.getName());
-        Guild newGuild = new Guild(plugin, newName, guild.getOwner());
-        newGuild.setLevel(guild.getLevel());
-        newGuild.setExp(guild.getExp());
-        guild.getMembers().forEach(member -> {
-            newGuild.addMember(member);
-            playerGuilds.put(member, newGuild);
-        });
-        guild.getClaimedChunks().forEach(chunk -> {
-            newGuild.claimChunk(chunk);
-            claimedChunks.put(chunk, newGuild);
-        });
-        guilds.put(newName, newGuild);
-        storage.saveGuild(newGuild);
+    public boolean updateGuildName(Guild guild, String newName) {
+        String oldName = guild.getName();
+        Guild existing = nameIndex.get(newName);
+        if (existing != null && existing != guild) {
+            return false;
+        }
+
+        nameIndex.remove(oldName, guild);
+        guild.applyRename(newName);
+        nameIndex.put(guild);
+        storage.saveGuild(guild);
+        return true;
+    }
+
+    private void refreshTerritory(ChunkLocation chunk) {
+        TerritoryTracker tracker = plugin.getTerritoryTracker();
+        if (tracker != null) {
+            tracker.refreshChunk(chunk.getWorldName(), chunk.getX(), chunk.getZ());
+        }
+    }
+
+    private void refreshTerritory(Guild guild) {
+        TerritoryTracker tracker = plugin.getTerritoryTracker();
+        if (tracker != null) {
+            tracker.refreshGuild(guild);
+        }
     }
 
     /**
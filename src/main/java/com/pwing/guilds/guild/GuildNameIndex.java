@@ -0,0 +1,104 @@
+package com.pwing.guilds.guild;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted index of guilds by case-insensitive name.
+ * Supports exact lookups and prefix iteration in O(log n + k), so tab completion
+ * does not have to scan every guild. Safe to read from any thread.
+ */
+public class GuildNameIndex {
+    private final NavigableMap<String, Guild> guilds = new ConcurrentSkipListMap<>();
+
+    /**
+     * Normalizes a guild name for case-insensitive comparison
+     * @param name The guild name
+     * @return The lower-cased name
+     */
+    public static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets a guild by name, ignoring case
+     * @param name The guild name
+     * @return The guild, or null if no guild has that name
+     */
+    public Guild get(String name) {
+        return guilds.get(normalize(name));
+    }
+
+    /**
+     * Checks whether a guild name is taken, ignoring case
+     * @param name The guild name
+     * @return true if a guild already uses the name
+     */
+    public boolean contains(String name) {
+        return guilds.containsKey(normalize(name));
+    }
+
+    /**
+     * Indexes a guild under its current name
+     * @param guild The guild to index
+     * @return The guild previously indexed under the same name, or null
+     */
+    public Guild put(Guild guild) {
+        return guilds.put(normalize(guild.getName()), guild);
+    }
+
+    /**
+     * Indexes a guild under its current name unless another guild already uses it
+     * @param guild The guild to index
+     * @return The guild already indexed under the same name, or null if the guild was indexed
+     */
+    public Guild putIfAbsent(Guild guild) {
+        return guilds.putIfAbsent(normalize(guild.getName()), guild);
+    }
+
+    /**
+     * Removes a guild name from the index if it still points to the given guild
+     * @param name The guild name
+     * @param guild The guild expected under that name
+     */
+    public void remove(String name, Guild guild) {
+        guilds.remove(normalize(name), guild);
+    }
+
+    /**
+     * Gets the names of guilds starting with a prefix, ignoring case
+     * @param prefix The prefix typed so far
+     * @param limit Maximum number of names to return
+     * @return Matching guild names in alphabetical order
+     */
+    public List<String> getNamesStartingWith(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        for (Map.Entry<String, Guild> entry : guilds.tailMap(key, true).entrySet()) {
+            if (names.size() >= limit || !entry.getKey().startsWith(key)) {
+                break;
+            }
+            names.add(entry.getValue().getName());
+        }
+        return names;
+    }
+
+    /**
+     * Gets the number of indexed names
+     * @return Index size
+     */
+    public int size() {
+        return guilds.size();
+    }
+
+    /**
+     * Removes all names from the index
+     */
+    public void clear() {
+        guilds.clear();
+    }
+}
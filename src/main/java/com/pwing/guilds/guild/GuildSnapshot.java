@@ -0,0 +1,206 @@
+package com.pwing.guilds.guild;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable copy of the persistent state of a guild.
+ * Taken on the main thread and handed to storage and backup threads, so they never
+ * read a {@link Guild} while the main thread changes it. Collections that did not
+ * change since the previous snapshot are shared with it instead of copied again.
+ */
+public final class GuildSnapshot {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long sequence = SEQUENCE.incrementAndGet();
+    private final Guild source;
+    private final int id;
+    private final String name;
+    private final UUID owner;
+    private final int level;
+    private final long exp;
+    private final int bonusClaims;
+    private final boolean pvpEnabled;
+    private final String tag;
+    private final Set<UUID> members;
+    private final Set<ChunkLocation> claimedChunks;
+    private final Map<String, GuildHome> homes;
+    private final Set<String> builtStructures;
+    private final GuildChangeSet changes;
+
+    GuildSnapshot(Guild guild, GuildChangeSet changes) {
+        this.source = guild;
+        this.id = guild.getId();
+        this.name = guild.getName();
+        this.owner = guild.getOwner();
+        this.level = guild.getLevel();
+        this.exp = guild.getExp();
+        this.bonusClaims = guild.getBonusClaims();
+        this.pvpEnabled = guild.isPvPEnabled();
+        this.tag = guild.getTag();
+        this.members = guild.copyMembers();
+        this.claimedChunks = guild.copyClaims();
+        this.homes = guild.copyHomes();
+        this.builtStructures = guild.copyStructures();
+        this.changes = changes;
+    }
+
+    /**
+     * Puts the changes carried by this snapshot back on the guild after a failed write,
+     * so the next save retries them
+     */
+    public void restoreChanges() {
+        if (changes != null) {
+            source.restoreChanges(changes);
+        }
+    }
+
+    /**
+     * Serializes the snapshot in the same format as {@link Guild#serialize()}
+     * @return Map of serialized guild data
+     */
+    public Map<String, Object> serialize() {
+        Map<String, Object> serialized = new HashMap<>();
+        serialized.put("id", id);
+        serialized.put("name", name);
+        serialized.put("owner", owner.toString());
+        serialized.put("level", level);
+        serialized.put("exp", exp);
+        serialized.put("bonus-claims", bonusClaims);
+        serialized.put("members", members.stream().map(UUID::toString).collect(Collectors.toList()));
+        serialized.put("claims", claimedChunks.stream().map(ChunkLocation::serialize).collect(Collectors.toList()));
+        serialized.put("homes", homes);
+        serialized.put("pvp-enabled", pvpEnabled);
+        serialized.put("builtStructures", new ArrayList<>(builtStructures));
+        if (tag != null) {
+            serialized.put("tag", tag);
+        }
+        return serialized;
+    }
+
+    /**
+     * Gets the order in which the snapshot was taken
+     * A snapshot with a higher sequence holds newer state of the same guild
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the guild the snapshot was taken from
+     * @return The guild
+     */
+    public Guild getGuild() {
+        return source;
+    }
+
+    /**
+     * Gets the permanent id of the guild
+     * @return The guild id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the name of the guild when the snapshot was taken
+     * @return The guild name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the UUID of the guild owner
+     * @return The owner's UUID
+     */
+    public UUID getOwner() {
+        return owner;
+    }
+
+    /**
+     * Gets the guild level
+     * @return The level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the guild experience
+     * @return The experience points
+     */
+    public long getExp() {
+        return exp;
+    }
+
+    /**
+     * Gets the number of bonus claim chunks
+     * @return Number of bonus claims
+     */
+    public int getBonusClaims() {
+        return bonusClaims;
+    }
+
+    /**
+     * Checks if PvP is enabled in guild territory
+     * @return true if PvP is enabled
+     */
+    public boolean isPvPEnabled() {
+        return pvpEnabled;
+    }
+
+    /**
+     * Gets the guild tag
+     * @return The tag, or null if none was set
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Gets the guild members
+     * @return Immutable set of member UUIDs
+     */
+    public Set<UUID> getMembers() {
+        return members;
+    }
+
+    /**
+     * Gets the claimed chunks
+     * @return Immutable set of claimed chunk locations
+     */
+    public Set<ChunkLocation> getClaimedChunks() {
+        return claimedChunks;
+    }
+
+    /**
+     * Gets the guild homes, each with its own copy of the location
+     * @return Immutable map of home keys to homes
+     */
+    public Map<String, GuildHome> getHomes() {
+        return homes;
+    }
+
+    /**
+     * Gets the built structures
+     * @return Immutable set of structure names
+     */
+    public Set<String> getBuiltStructures() {
+        return builtStructures;
+    }
+
+    /**
+     * Gets the changes recorded since the previous save
+     * @return The drained changes, or null if the snapshot was not taken for a save
+     */
+    public GuildChangeSet getChanges() {
+        return changes;
+    }
+}
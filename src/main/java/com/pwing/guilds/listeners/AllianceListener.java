@@ -36,7 +36,7 @@ public class AllianceListener implements Listener {
         Guild guild = event.getGuild();
 
         alliance.addMember(guild);
-        plugin.getAllianceManager().updateGuildAlliance(guild.getName(), alliance);
+        plugin.getAllianceManager().updateGuildAlliance(guild, alliance);
         plugin.getAllianceManager().saveAlliance(alliance);
 
         alliance.getMembers().forEach(g ->
@@ -53,7 +53,7 @@ public class AllianceListener implements Listener {
         Guild guild = event.getGuild();
 
         alliance.removeMember(guild);
-        plugin.getAllianceManager().removeGuildAlliance(guild.getName());
+        plugin.getAllianceManager().removeGuildAlliance(guild);
         plugin.getAllianceManager().saveAlliance(alliance);
 
         alliance.getMembers().forEach(g ->
@@ -80,8 +80,8 @@ public class AllianceListener implements Listener {
             if (alliance != null) {
                 String formattedMessage = "§b[Alliance] " + guild.getName() + " " +
                     player.getName() + ": §f" + message.substring(3);
-                alliance.getMembers().forEach(g ->
-                    g.broadcastMessage(formattedMessage));
+                // Converted once and sent to the alliance's maintained recipient list
+                plugin.getServerAdapter().broadcast(alliance.getOnlineRecipients(), formattedMessage);
             }
         });
     }
@@ -37,7 +37,7 @@ public class GuildBackupListener implements Listener {
         Guild guild = event.getGuild();
         plugin.getLogger().info("Creating backup for new guild: " + guild.getName());
         
-        backupManager.createBackup(guild, "creation");
+        backupManager.createBackup(guild.snapshot(), "creation");
     }
 
     /**
@@ -49,7 +49,7 @@ public class GuildBackupListener implements Listener {
         Guild guild = event.getGuild();
         plugin.getLogger().info("Creating backup before deleting guild: " + guild.getName());
         
-        backupManager.createBackup(guild, "pre-deletion");
+        backupManager.createBackup(guild.snapshot(), "pre-deletion");
     }
 
     /**
@@ -68,7 +68,7 @@ public class GuildBackupListener implements Listener {
         // Backup all active guilds
         plugin.getGuildManager().getGuilds().forEach(guild -> {
             try {
-                backupManager.createBackup(guild, "shutdown");
+                backupManager.createBackup(guild.snapshot(), "shutdown");
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to create shutdown backup for guild: " + guild.getName());
                 e.printStackTrace();
@@ -6,9 +6,9 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 
-import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles guild chat functionality and message routing
@@ -16,7 +16,7 @@ import java.util.UUID;
  */
 public class GuildChatListener implements Listener {
     private final PwingGuilds plugin;
-    private final Set<UUID> guildChatEnabled = new HashSet<>();
+    private final Set<UUID> guildChatEnabled = ConcurrentHashMap.newKeySet();
 
     /**
      * Creates a new guild chat listener
@@ -38,7 +38,7 @@ public class GuildChatListener implements Listener {
             event.setCancelled(true);
             plugin.getGuildManager().getPlayerGuild(player.getUniqueId()).ifPresent(guild -> {
                 String message = "§2[Guild] §a" + player.getName() + ": §f" + event.getMessage();
-                guild.getOnlineMembers().forEach(member -> member.sendMessage(message));
+                guild.broadcastMessage(message);
             });
         }
     }
@@ -48,9 +48,7 @@ public class GuildChatListener implements Listener {
      * @param playerId UUID of player to toggle chat for
      */
     public void toggleGuildChat(UUID playerId) {
-        if (guildChatEnabled.contains(playerId)) {
-            guildChatEnabled.remove(playerId);
-        } else {
+        if (!guildChatEnabled.remove(playerId)) {
             guildChatEnabled.add(playerId);
         }
     }
@@ -9,6 +9,7 @@ import org.bukkit.event.entity.EntityDeathEvent;
 /**
  * Handles experience gain events for guilds
  * Awards exp for block breaking and mob kills
+ * The exp is collected by {@link com.pwing.guilds.exp.GuildExpManager} and applied in batches
  */
 public class GuildExpListener implements Listener {
     private final PwingGuilds plugin;
@@ -27,13 +28,10 @@ public class GuildExpListener implements Listener {
      */
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
-        if (!plugin.getConfig().getBoolean("exp-sources.blocks.enabled")) return;
+        if (!plugin.getExpManager().isBlockExpEnabled()) return;
         
         plugin.getGuildManager().getPlayerGuild(event.getPlayer().getUniqueId()).ifPresent(guild -> {
-            long exp = plugin.getExpManager().calculateBlockExp(event.getBlock());
-            if (guild.addExp(exp)) {
-                event.getPlayer().sendMessage("§aYour guild has reached level " + guild.getLevel() + "!");
-            }
+            plugin.getExpManager().queueBlockExp(guild, event.getPlayer(), event.getBlock());
         });
     }
 
@@ -44,14 +42,10 @@ public class GuildExpListener implements Listener {
     @EventHandler
     public void onEntityKill(EntityDeathEvent event) {
         if (event.getEntity().getKiller() == null) return;
-        if (!plugin.getConfig().getBoolean("exp-sources.vanilla-mobs.enabled") && 
-            !plugin.getConfig().getBoolean("exp-sources.mythicmobs.enabled")) return;
+        if (!plugin.getExpManager().isMobExpEnabled()) return;
 
         plugin.getGuildManager().getPlayerGuild(event.getEntity().getKiller().getUniqueId()).ifPresent(guild -> {
-            long exp = plugin.getExpManager().calculateMobExp(event.getEntity());
-            if (guild.addExp(exp)) {
-                event.getEntity().getKiller().sendMessage("§aYour guild has reached level " + guild.getLevel() + "!");
-            }
+            plugin.getExpManager().queueMobExp(guild, event.getEntity().getKiller(), event.getEntity());
         });
     }
 }
\ No newline at end of file
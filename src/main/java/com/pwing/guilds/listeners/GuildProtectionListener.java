@@ -1,19 +1,41 @@
 package com.pwing.guilds.listeners;
 
 import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.guild.Guild;
+import com.pwing.guilds.protection.ProtectionAction;
+import com.pwing.guilds.protection.ProtectionManager;
+import com.pwing.guilds.protection.ProtectionResult;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.entity.TNTPrimed;
+import org.bukkit.event.Cancellable;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.hanging.HangingBreakByEntityEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
 import org.bukkit.event.player.PlayerBucketFillEvent;
 
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Listener for guild protection-related events.
+ * Delegates every decision to the {@link ProtectionManager}.
  */
 public class GuildProtectionListener implements Listener {
     private final PwingGuilds plugin;
@@ -30,30 +52,18 @@ public class GuildProtectionListener implements Listener {
      * Handles block break events.
      * @param event The block break event.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
-        plugin.getGuildManager().getGuildByChunk(event.getBlock().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(event.getPlayer().getUniqueId())) {
-                        event.setCancelled(true);
-                        event.getPlayer().sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        check(event, event.getPlayer(), event.getBlock(), ProtectionAction.BLOCK_BREAK);
     }
 
     /**
      * Handles block place events.
      * @param event The block place event.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
-        plugin.getGuildManager().getGuildByChunk(event.getBlock().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(event.getPlayer().getUniqueId())) {
-                        event.setCancelled(true);
-                        event.getPlayer().sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        check(event, event.getPlayer(), event.getBlock(), ProtectionAction.BLOCK_PLACE);
     }
 
     /**
@@ -62,78 +72,165 @@ public class GuildProtectionListener implements Listener {
      */
     @EventHandler
     public void onPlayerInteract(PlayerInteractEvent event) {
-        if (event.getClickedBlock() == null) return;
+        Block block = event.getClickedBlock();
+        if (block == null) return;
 
-        plugin.getGuildManager().getGuildByChunk(event.getClickedBlock().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(event.getPlayer().getUniqueId())) {
-                        event.setCancelled(true);
-                        event.getPlayer().sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        ProtectionAction action;
+        if (event.getAction() != Action.PHYSICAL) {
+            action = plugin.getProtectionManager().classifyInteraction(block.getType());
+        } else if (block.getType() == Material.FARMLAND || block.getType() == Material.TURTLE_EGG) {
+            // Trampling destroys the crop or egg, so it counts as breaking it
+            action = ProtectionAction.BLOCK_BREAK;
+        } else {
+            action = ProtectionAction.REDSTONE;
+        }
+        check(event, event.getPlayer(), block, action);
     }
 
     /**
      * Handles bucket empty events.
      * @param event The bucket empty event.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onBucketEmpty(PlayerBucketEmptyEvent event) {
-        plugin.getGuildManager().getGuildByChunk(event.getBlock().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(event.getPlayer().getUniqueId())) {
-                        event.setCancelled(true);
-                        event.getPlayer().sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        check(event, event.getPlayer(), event.getBlock(), ProtectionAction.BLOCK_PLACE);
     }
 
     /**
      * Handles bucket fill events.
      * @param event The bucket fill event.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onBucketFill(PlayerBucketFillEvent event) {
-        plugin.getGuildManager().getGuildByChunk(event.getBlock().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(event.getPlayer().getUniqueId())) {
-                        event.setCancelled(true);
-                        event.getPlayer().sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        check(event, event.getPlayer(), event.getBlock(), ProtectionAction.BLOCK_BREAK);
     }
 
     /**
      * Handles entity damage events.
      * @param event The entity damage event.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onEntityDamage(EntityDamageByEntityEvent event) {
         if (!(event.getDamager() instanceof Player player)) return;
 
-        plugin.getGuildManager().getGuildByChunk(event.getEntity().getLocation().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(player.getUniqueId())) {
-                        event.setCancelled(true);
-                        player.sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        check(event, player, event.getEntity().getLocation(), ProtectionAction.ENTITY_DAMAGE);
     }
 
     /**
      * Handles hanging break events.
      * @param event The hanging break event.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onHangingBreak(HangingBreakByEntityEvent event) {
         if (!(event.getRemover() instanceof Player player)) return;
 
-        plugin.getGuildManager().getGuildByChunk(event.getEntity().getLocation().getChunk())
-                .ifPresent(guild -> {
-                    if (!guild.getMembers().contains(player.getUniqueId())) {
-                        event.setCancelled(true);
-                        player.sendMessage("§cThis area is protected by " + guild.getName());
-                    }
-                });
+        check(event, player, event.getEntity().getLocation(), ProtectionAction.BLOCK_BREAK);
+    }
+
+    /**
+     * Stops pistons pushing blocks into another guild's territory.
+     * @param event The piston extend event.
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        Block piston = event.getBlock();
+        BlockFace direction = event.getDirection();
+        Guild source = getProtectingGuild(piston, ProtectionAction.PISTONS);
+        if (crossesBorder(source, piston.getRelative(direction), ProtectionAction.PISTONS)) {
+            event.setCancelled(true);
+            return;
+        }
+        for (Block block : event.getBlocks()) {
+            if (crossesBorder(source, block.getRelative(direction), ProtectionAction.PISTONS)) {
+                event.setCancelled(true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops sticky pistons pulling blocks out of another guild's territory.
+     * @param event The piston retract event.
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        Guild source = getProtectingGuild(event.getBlock(), ProtectionAction.PISTONS);
+        for (Block block : event.getBlocks()) {
+            if (crossesBorder(source, block, ProtectionAction.PISTONS)) {
+                event.setCancelled(true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Keeps entity explosions from destroying claimed blocks, unless a member of the
+     * claiming guild set them off.
+     * @param event The entity explode event.
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        removeProtectedBlocks(getResponsiblePlayer(event.getEntity()), event.blockList());
+    }
+
+    /**
+     * Keeps block explosions from destroying claimed blocks.
+     * @param event The block explode event.
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        // Beds and respawn anchors do not tell who used them
+        removeProtectedBlocks(null, event.blockList());
+    }
+
+    private void check(Cancellable event, Player player, Block block, ProtectionAction action) {
+        if (plugin.getProtectionManager().check(player, block.getWorld(), block.getX() >> 4, block.getZ() >> 4, action)
+                == ProtectionResult.DENY) {
+            event.setCancelled(true);
+        }
+    }
+
+    private void check(Cancellable event, Player player, Location location, ProtectionAction action) {
+        if (plugin.getProtectionManager().check(player, location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, action)
+                == ProtectionResult.DENY) {
+            event.setCancelled(true);
+        }
+    }
+
+    private Guild getProtectingGuild(Block block, ProtectionAction action) {
+        return plugin.getProtectionManager().getProtectingGuild(block.getWorld(), block.getX() >> 4, block.getZ() >> 4, action);
+    }
+
+    private boolean crossesBorder(Guild source, Block target, ProtectionAction action) {
+        Guild owner = getProtectingGuild(target, action);
+        return owner != null && owner != source;
+    }
+
+    /**
+     * Gets the player who set off an exploding entity
+     * Only primed TNT and projectiles remember one; creepers, crystals and other
+     * explosions count as caused by nobody
+     */
+    private UUID getResponsiblePlayer(Entity entity) {
+        Entity source = null;
+        if (entity instanceof TNTPrimed tnt) {
+            source = tnt.getSource();
+        } else if (entity instanceof Projectile projectile && projectile.getShooter() instanceof Entity shooter) {
+            source = shooter;
+        }
+        return source instanceof Player player ? player.getUniqueId() : null;
+    }
+
+    private void removeProtectedBlocks(UUID cause, List<Block> blocks) {
+        ProtectionManager protection = plugin.getProtectionManager();
+        if (!protection.isProtected(ProtectionAction.EXPLOSIONS)) return;
+
+        if (cause == null) {
+            blocks.removeIf(block -> getProtectingGuild(block, ProtectionAction.EXPLOSIONS) != null);
+            return;
+        }
+        // Members may blow up their own guild's land
+        blocks.removeIf(block -> protection.getDenyingGuild(block.getWorld(), block.getX() >> 4, block.getZ() >> 4,
+                cause, ProtectionAction.EXPLOSIONS) != null);
     }
-}
\ No newline at end of file
+}
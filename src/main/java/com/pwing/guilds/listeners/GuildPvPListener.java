@@ -6,7 +6,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
-import java.util.Optional;
 
 /**
  * Listens for PvP events involving guild members.
@@ -35,9 +34,10 @@ public class GuildPvPListener implements Listener {
         Player victim = (Player) event.getEntity();
         Player attacker = (Player) event.getDamager();
         
-        // Check if in guild territory
-        Optional<Guild> territoryGuild = plugin.getGuildManager().getGuildByChunk(victim.getLocation().getChunk());
-        if (territoryGuild.isPresent() && !territoryGuild.get().isPvPAllowed(attacker, victim)) {
+        // Check if in guild territory; looked up directly, as the tracked territory
+        // can lag behind movement that fires no move event
+        Guild territoryGuild = plugin.getGuildManager().getClaimIndex().get(victim.getLocation());
+        if (territoryGuild != null && !territoryGuild.isPvPAllowed(attacker, victim)) {
             event.setCancelled(true);
             attacker.sendMessage("§cPvP is not allowed in this guild territory!");
         }
@@ -27,7 +27,7 @@ public class PlayerJoinQuitListener implements Listener {
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         plugin.getGuildManager().getPlayerGuild(event.getPlayer().getUniqueId())
-            .ifPresent(guild -> guild.updateMemberList());
+            .ifPresent(guild -> guild.setMemberOnline(event.getPlayer(), true));
     }
 
     /**
@@ -37,6 +37,7 @@ public class PlayerJoinQuitListener implements Listener {
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         plugin.getGuildManager().getPlayerGuild(event.getPlayer().getUniqueId())
-            .ifPresent(guild -> guild.updateMemberList());
+            .ifPresent(guild -> guild.setMemberOnline(event.getPlayer(), false));
+        plugin.getProtectionManager().clearPlayer(event.getPlayer().getUniqueId());
     }
 }
@@ -4,55 +4,28 @@ import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.api.GuildPerkActivateEvent;
 import com.pwing.guilds.guild.Guild;
 import org.bukkit.Bukkit;
-import org.bukkit.configuration.ConfigurationSection;
 
 /**
  * Manages guild perks.
+ * A view of the guild's level in the shared {@link LevelTable}, so it follows level
+ * changes and config reloads without being recreated.
  */
 public class GuildPerks {
-    private final int memberLimit;
-    private final int teleportCooldown;
-    private final double expMultiplier;
-    private final boolean keepInventory;
-    private final int homeLimit;
     private final PwingGuilds plugin;
-    private final int level;
     private final Guild guild;
-    private final int storageRows;
-    private final boolean storageAccess;
 
     /**
      * Constructs a new GuildPerks instance.
      * @param plugin The plugin instance.
      * @param guild The guild.
-     * @param level The level of the guild.
      */
-    public GuildPerks(PwingGuilds plugin, Guild guild, int level) {
+    public GuildPerks(PwingGuilds plugin, Guild guild) {
         this.plugin = plugin;
         this.guild = guild;
-        this.level = level;
+    }
 
-        // Get default values if perks section is null
-        ConfigurationSection perks = plugin.getConfig().getConfigurationSection("guild-levels." + level + ".perks");
-        if (perks == null) {
-            // Set default values
-            this.memberLimit = 5;
-            this.teleportCooldown = 300;
-            this.expMultiplier = 1.0;
-            this.keepInventory = false;
-            this.homeLimit = 1;
-            this.storageRows = 1;
-            this.storageAccess = true;
-        } else {
-            // Load from config
-            this.memberLimit = perks.getInt("member-limit", 5);
-            this.teleportCooldown = perks.getInt("teleport-cooldown", 300);
-            this.expMultiplier = perks.getDouble("exp-multiplier", 1.0);
-            this.keepInventory = perks.getBoolean("keep-inventory", false);
-            this.homeLimit = perks.getInt("home-limit", 1);
-            this.storageRows = perks.getInt("storage-rows", 1);
-            this.storageAccess = perks.getBoolean("storage-access", true);
-        }
+    private LevelTable.Perks current() {
+        return plugin.getLevelTable().getPerks(guild.getLevel());
     }
 
     /**
@@ -65,15 +38,16 @@ public class GuildPerks {
         Bukkit.getPluginManager().callEvent(event);
 
         if (!event.isCancelled()) {
+            LevelTable.Perks perks = current();
             switch (perkName.toLowerCase()) {
                 case "keep-inventory":
-                    return keepInventory;
+                    return perks.hasKeepInventory();
                 case "extra-homes":
-                    return homeLimit > 1;
+                    return perks.getHomeLimit() > 1;
                 case "exp-boost":
-                    return expMultiplier > 1.0;
+                    return perks.getExpMultiplier() > 1.0;
                 case "guild-storage":
-                    return storageRows > 0;
+                    return perks.getStorageRows() > 0;
                 default:
                     return false;
             }
@@ -86,7 +60,7 @@ public class GuildPerks {
      * @return The member limit.
      */
     public int getMemberLimit() {
-        return memberLimit;
+        return current().getMemberLimit();
     }
 
     /**
@@ -94,7 +68,7 @@ public class GuildPerks {
      * @return The teleport cooldown.
      */
     public int getTeleportCooldown() {
-        return teleportCooldown;
+        return current().getTeleportCooldown();
     }
 
     /**
@@ -102,7 +76,7 @@ public class GuildPerks {
      * @return The experience multiplier.
      */
     public double getExpMultiplier() {
-        return expMultiplier;
+        return current().getExpMultiplier();
     }
 
     /**
@@ -110,7 +84,7 @@ public class GuildPerks {
      * @return true if keep inventory is enabled, false otherwise.
      */
     public boolean hasKeepInventory() {
-        return keepInventory;
+        return current().hasKeepInventory();
     }
 
     /**
@@ -118,7 +92,7 @@ public class GuildPerks {
      * @return The home limit.
      */
     public int getHomeLimit() {
-        return homeLimit;
+        return current().getHomeLimit();
     }
 
     /**
@@ -126,7 +100,7 @@ public class GuildPerks {
      * @return The storage rows.
      */
     public int getStorageRows() {
-        return storageRows;
+        return current().getStorageRows();
     }
 }
 
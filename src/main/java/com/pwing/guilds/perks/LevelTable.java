@@ -0,0 +1,206 @@
+package com.pwing.guilds.perks;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The guild levels from the guild-levels section of config.yml, compiled once.
+ * Immutable and shared by all guilds; a reload builds a new table instead of changing
+ * this one, so a guild never sees levels from two versions of the config.
+ */
+public final class LevelTable {
+    private final int maxLevel;
+    private final long[] expRequired;
+    private final int[] maxClaims;
+    private final Perks[] perks;
+
+    private LevelTable(int maxLevel, long[] expRequired, int[] maxClaims, Perks[] perks) {
+        this.maxLevel = maxLevel;
+        this.expRequired = expRequired;
+        this.maxClaims = maxClaims;
+        this.perks = perks;
+    }
+
+    /**
+     * Compiles the levels of a config
+     * Levels missing between defined ones need no exp and get the default perks
+     * @param config The plugin config
+     * @param logger Logger for levels that are not numbers
+     * @return The level table
+     */
+    public static LevelTable load(ConfigurationSection config, Logger logger) {
+        ConfigurationSection levels = config.getConfigurationSection("guild-levels");
+        int maxLevel = 1;
+        if (levels != null) {
+            for (String key : levels.getKeys(false)) {
+                try {
+                    maxLevel = Math.max(maxLevel, Integer.parseInt(key));
+                } catch (NumberFormatException e) {
+                    logger.warning("Ignoring guild level that is not a number: " + key);
+                }
+            }
+        }
+
+        long[] expRequired = new long[maxLevel + 1];
+        int[] maxClaims = new int[maxLevel + 1];
+        Perks[] perks = new Perks[maxLevel + 1];
+        Arrays.fill(perks, Perks.DEFAULT);
+        for (int level = 1; level <= maxLevel; level++) {
+            ConfigurationSection section = levels != null ? levels.getConfigurationSection(String.valueOf(level)) : null;
+            if (section == null) {
+                continue;
+            }
+            expRequired[level] = section.getLong("exp-required");
+            maxClaims[level] = section.getInt("max-claims");
+            ConfigurationSection perkSection = section.getConfigurationSection("perks");
+            if (perkSection != null) {
+                perks[level] = new Perks(perkSection);
+            }
+        }
+        return new LevelTable(maxLevel, expRequired, maxClaims, perks);
+    }
+
+    /**
+     * Gets the highest level
+     * @return The highest configured level
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * Gets the total exp a guild needs to reach a level
+     * @param level The level
+     * @return The exp required, or 0 for levels that are not configured
+     */
+    public long getExpRequired(int level) {
+        return level >= 0 && level <= maxLevel ? expRequired[level] : 0;
+    }
+
+    /**
+     * Gets the chunks a guild of a level may claim, not counting bonus claims
+     * @param level The level
+     * @return The claim limit, or 0 for levels that are not configured
+     */
+    public int getMaxClaims(int level) {
+        return level >= 0 && level <= maxLevel ? maxClaims[level] : 0;
+    }
+
+    /**
+     * Gets the perks of a level
+     * @param level The level
+     * @return The perks, or the default perks for levels that are not configured
+     */
+    public Perks getPerks(int level) {
+        return level >= 0 && level <= maxLevel ? perks[level] : Perks.DEFAULT;
+    }
+
+    /**
+     * Gets the level a guild reaches with an amount of exp
+     * Levels are reached in order, so this can skip several levels at once but never
+     * past one whose requirement is not met
+     * @param level The current level
+     * @param exp The guild's total exp
+     * @return The new level, never lower than the current one
+     */
+    public int getLevelForExp(int level, long exp) {
+        while (level < maxLevel && exp >= expRequired[level + 1]) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * The perks of one level
+     */
+    public static final class Perks {
+        private static final Perks DEFAULT = new Perks(5, 300, 1.0, false, 1, 1, true);
+
+        private final int memberLimit;
+        private final int teleportCooldown;
+        private final double expMultiplier;
+        private final boolean keepInventory;
+        private final int homeLimit;
+        private final int storageRows;
+        private final boolean storageAccess;
+
+        private Perks(int memberLimit, int teleportCooldown, double expMultiplier, boolean keepInventory,
+                      int homeLimit, int storageRows, boolean storageAccess) {
+            this.memberLimit = memberLimit;
+            this.teleportCooldown = teleportCooldown;
+            this.expMultiplier = expMultiplier;
+            this.keepInventory = keepInventory;
+            this.homeLimit = homeLimit;
+            this.storageRows = storageRows;
+            this.storageAccess = storageAccess;
+        }
+
+        private Perks(ConfigurationSection perks) {
+            this(perks.getInt("member-limit", DEFAULT.memberLimit),
+                    perks.getInt("teleport-cooldown", DEFAULT.teleportCooldown),
+                    perks.getDouble("exp-multiplier", DEFAULT.expMultiplier),
+                    perks.getBoolean("keep-inventory", DEFAULT.keepInventory),
+                    perks.getInt("home-limit", DEFAULT.homeLimit),
+                    perks.getInt("storage-rows", DEFAULT.storageRows),
+                    perks.getBoolean("storage-access", DEFAULT.storageAccess));
+        }
+
+        /**
+         * Gets the member limit
+         * @return The member limit
+         */
+        public int getMemberLimit() {
+            return memberLimit;
+        }
+
+        /**
+         * Gets the teleport cooldown
+         * @return The teleport cooldown in seconds
+         */
+        public int getTeleportCooldown() {
+            return teleportCooldown;
+        }
+
+        /**
+         * Gets the experience multiplier
+         * @return The experience multiplier
+         */
+        public double getExpMultiplier() {
+            return expMultiplier;
+        }
+
+        /**
+         * Checks if keep inventory is enabled
+         * @return true if keep inventory is enabled
+         */
+        public boolean hasKeepInventory() {
+            return keepInventory;
+        }
+
+        /**
+         * Gets the home limit
+         * @return The home limit
+         */
+        public int getHomeLimit() {
+            return homeLimit;
+        }
+
+        /**
+         * Gets the storage rows
+         * @return The storage rows
+         */
+        public int getStorageRows() {
+            return storageRows;
+        }
+
+        /**
+         * Checks if storage access is enabled
+         * @return true if storage access is enabled
+         */
+        public boolean hasStorageAccess() {
+            return storageAccess;
+        }
+    }
+}
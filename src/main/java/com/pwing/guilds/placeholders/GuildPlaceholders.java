@@ -65,16 +65,10 @@ private final PwingGuilds plugin;
                     .orElse("None");
 
             case "next_level_exp" -> plugin.getGuildManager().getPlayerGuild(player.getUniqueId())
-                    .map(guild -> String.valueOf(plugin.getConfig().getLong("guild-levels." + (guild.getLevel() + 1) + ".exp-required")))
+                    .map(guild -> String.valueOf(plugin.getLevelTable().getExpRequired(guild.getLevel() + 1)))
                     .orElse("0");
 
-                case "claim_status" -> {
-                    var chunk = player.getLocation().getChunk();
-                    var claimingGuild = plugin.getGuildManager().getGuilds().stream()
-                        .filter(g -> g.isChunkClaimed(chunk))
-                        .findFirst();
-                    yield claimingGuild.isPresent() ? "Claimed" : "Unclaimed";
-                }
+            case "claim_status" -> plugin.getTerritoryTracker().getCurrentTerritory(player) != null ? "Claimed" : "Unclaimed";
 
             case "alliance" -> plugin.getGuildManager().getPlayerGuild(player.getUniqueId())
                     .map(guild -> guild.getAlliance() != null ? guild.getAlliance().getName() : "No Alliance")
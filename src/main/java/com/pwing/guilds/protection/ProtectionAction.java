@@ -0,0 +1,61 @@
+package com.pwing.guilds.protection;
+
+/**
+ * Actions that can be restricted inside guild territory.
+ * Each action maps to a flag under {@code guild-claims.protection} in config.yml.
+ */
+public enum ProtectionAction {
+    /**
+     * Breaking blocks, filling buckets and removing hanging entities
+     */
+    BLOCK_BREAK("block-break"),
+
+    /**
+     * Placing blocks and emptying buckets
+     */
+    BLOCK_PLACE("block-place"),
+
+    /**
+     * Right-clicking blocks that are not containers or redstone components
+     */
+    INTERACT("interact"),
+
+    /**
+     * Opening chests, barrels, furnaces and other block inventories
+     */
+    CONTAINERS("containers"),
+
+    /**
+     * Damaging entities
+     */
+    ENTITY_DAMAGE("entity-damage"),
+
+    /**
+     * Using buttons, levers, pressure plates and other redstone components
+     */
+    REDSTONE("redstone"),
+
+    /**
+     * Pistons pushing or pulling blocks across a claim border
+     */
+    PISTONS("pistons"),
+
+    /**
+     * Explosions destroying claimed blocks
+     */
+    EXPLOSIONS("explosions");
+
+    private final String configKey;
+
+    ProtectionAction(String configKey) {
+        this.configKey = configKey;
+    }
+
+    /**
+     * Gets the config key of this action's protection flag
+     * @return Key under guild-claims.protection
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+}
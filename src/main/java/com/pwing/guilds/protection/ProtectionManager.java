@@ -0,0 +1,204 @@
+package com.pwing.guilds.protection;
+
+import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.guild.Guild;
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Decides whether players may perform actions inside guild territory.
+ * Honours the {@code guild-claims.protection} flags, caches the denial
+ * message per guild and rate-limits how often a player is told an area is protected.
+ */
+public class ProtectionManager {
+    private static final long DEFAULT_MESSAGE_COOLDOWN = 2000L;
+    private static final Set<String> CONTAINER_MATERIALS = Set.of(
+            "CHEST", "TRAPPED_CHEST", "BARREL", "FURNACE", "BLAST_FURNACE", "SMOKER",
+            "HOPPER", "DROPPER", "DISPENSER", "BREWING_STAND", "LECTERN", "JUKEBOX",
+            "CHISELED_BOOKSHELF", "DECORATED_POT", "CRAFTER");
+    private static final Set<String> REDSTONE_MATERIALS = Set.of(
+            "LEVER", "REPEATER", "COMPARATOR", "DAYLIGHT_DETECTOR", "NOTE_BLOCK", "TRIPWIRE");
+
+    private final PwingGuilds plugin;
+    private final boolean[] enabled = new boolean[ProtectionAction.values().length];
+    private final ProtectionAction[] interactActions;
+    private final Map<Guild, DenialMessage> denialMessages = new WeakHashMap<>();
+    private final Map<UUID, long[]> lastDenialMessage = new HashMap<>();
+    private long messageCooldown;
+
+    /**
+     * Creates a new protection manager and loads its settings
+     * @param plugin The plugin instance
+     */
+    public ProtectionManager(PwingGuilds plugin) {
+        this.plugin = plugin;
+        this.interactActions = buildInteractActions();
+        loadSettings();
+    }
+
+    /**
+     * Reads the protection flags and message cooldown from config.yml
+     */
+    public void loadSettings() {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("guild-claims.protection");
+        for (ProtectionAction action : ProtectionAction.values()) {
+            enabled[action.ordinal()] = section == null || section.getBoolean(action.getConfigKey(), true);
+        }
+        messageCooldown = plugin.getConfig().getLong("guild-claims.deny-message-cooldown", DEFAULT_MESSAGE_COOLDOWN);
+        denialMessages.clear();
+    }
+
+    /**
+     * Checks whether an action is protected at all
+     * @param action The action to check
+     * @return true if the action's protection flag is enabled
+     */
+    public boolean isProtected(ProtectionAction action) {
+        return enabled[action.ordinal()];
+    }
+
+    /**
+     * Decides whether a player may perform an action in a chunk
+     * @param world The world of the chunk
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @param player UUID of the acting player
+     * @param action The action being performed
+     * @return ALLOW or DENY
+     */
+    public ProtectionResult evaluate(World world, int chunkX, int chunkZ, UUID player, ProtectionAction action) {
+        return getDenyingGuild(world, chunkX, chunkZ, player, action) == null ? ProtectionResult.ALLOW : ProtectionResult.DENY;
+    }
+
+    /**
+     * Decides whether a player may perform an action in a chunk and notifies them when denied
+     * @param player The acting player
+     * @param world The world of the chunk
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @param action The action being performed
+     * @return ALLOW or DENY
+     */
+    public ProtectionResult check(Player player, World world, int chunkX, int chunkZ, ProtectionAction action) {
+        Guild guild = getDenyingGuild(world, chunkX, chunkZ, player.getUniqueId(), action);
+        if (guild == null) {
+            return ProtectionResult.ALLOW;
+        }
+        notifyDenied(player, guild);
+        return ProtectionResult.DENY;
+    }
+
+    /**
+     * Gets the guild that blocks a player's action in a chunk
+     * @param world The world of the chunk
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @param player UUID of the acting player
+     * @param action The action being performed
+     * @return The owning guild if the action is denied, or null if allowed
+     */
+    public Guild getDenyingGuild(World world, int chunkX, int chunkZ, UUID player, ProtectionAction action) {
+        if (!enabled[action.ordinal()]) {
+            return null;
+        }
+        Guild guild = plugin.getGuildManager().getGuildAt(world, chunkX, chunkZ);
+        if (guild == null || guild.isMember(player)) {
+            return null;
+        }
+        return guild;
+    }
+
+    /**
+     * Gets the guild owning a chunk when the given action is protected
+     * Used for actions without an acting player such as pistons and explosions
+     * @param world The world of the chunk
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @param action The action being performed
+     * @return The owning guild, or null if unclaimed or the action is unprotected
+     */
+    public Guild getProtectingGuild(World world, int chunkX, int chunkZ, ProtectionAction action) {
+        if (!enabled[action.ordinal()]) {
+            return null;
+        }
+        return plugin.getGuildManager().getGuildAt(world, chunkX, chunkZ);
+    }
+
+    /**
+     * Classifies a right-click on a block
+     * @param material The clicked block's material
+     * @return CONTAINERS, REDSTONE or INTERACT
+     */
+    public ProtectionAction classifyInteraction(Material material) {
+        return interactActions[material.ordinal()];
+    }
+
+    /**
+     * Tells a player an area is protected, at most once per cooldown
+     * @param player The player to notify
+     * @param guild The guild protecting the area
+     */
+    public void notifyDenied(Player player, Guild guild) {
+        long now = System.currentTimeMillis();
+        long[] last = lastDenialMessage.computeIfAbsent(player.getUniqueId(), k -> new long[1]);
+        if (now - last[0] < messageCooldown) {
+            return;
+        }
+        last[0] = now;
+        player.sendMessage(getDenialMessage(guild));
+    }
+
+    /**
+     * Forgets the message cooldown of a player
+     * @param player UUID of the player
+     */
+    public void clearPlayer(UUID player) {
+        lastDenialMessage.remove(player);
+    }
+
+    private String getDenialMessage(Guild guild) {
+        DenialMessage cached = denialMessages.get(guild);
+        String name = guild.getName();
+        if (cached == null || !cached.guildName.equals(name)) {
+            cached = new DenialMessage(name, "§cThis area is protected by " + name);
+            denialMessages.put(guild, cached);
+        }
+        return cached.text;
+    }
+
+    private static ProtectionAction[] buildInteractActions() {
+        Material[] materials = Material.values();
+        ProtectionAction[] actions = new ProtectionAction[materials.length];
+        for (Material material : materials) {
+            String name = material.name();
+            ProtectionAction action = ProtectionAction.INTERACT;
+            if (CONTAINER_MATERIALS.contains(name) || name.endsWith("SHULKER_BOX")) {
+                action = ProtectionAction.CONTAINERS;
+            } else if (REDSTONE_MATERIALS.contains(name) || (!name.startsWith("LEGACY_")
+                    && (Tag.BUTTONS.isTagged(material) || Tag.PRESSURE_PLATES.isTagged(material)))) {
+                action = ProtectionAction.REDSTONE;
+            }
+            actions[material.ordinal()] = action;
+        }
+        return actions;
+    }
+
+    private static final class DenialMessage {
+        private final String guildName;
+        private final String text;
+
+        private DenialMessage(String guildName, String text) {
+            this.guildName = guildName;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.pwing.guilds.protection;
+
+/**
+ * Outcome of a protection check
+ */
+public enum ProtectionResult {
+    /**
+     * The action may proceed
+     */
+    ALLOW,
+
+    /**
+     * The action must be cancelled
+     */
+    DENY
+}
@@ -0,0 +1,139 @@
+package com.pwing.guilds.storage;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lists every guild that existed when an incremental backup ran.
+ * Each entry names the archive holding that guild's content, which is the run's own
+ * archive if the guild changed and an earlier one otherwise, so a single manifest is
+ * enough to reconstruct all guilds as they were at that moment. The journal segment
+ * started together with the run holds every change made after it.
+ */
+final class BackupManifest {
+    static final String ENTRY_NAME = "manifest.yml";
+
+    private final String archive;
+    private final long created;
+    private final String previous;
+    private final String journal;
+    private final Map<Integer, Entry> guilds = new TreeMap<>();
+
+    BackupManifest(String archive, long created, String previous, String journal) {
+        this.archive = archive;
+        this.created = created;
+        this.previous = previous;
+        this.journal = journal;
+    }
+
+    /**
+     * Reads a manifest stored in an archive
+     * @param archive The archive the manifest was read from
+     * @param yaml The manifest contents
+     * @return The manifest
+     * @throws InvalidConfigurationException if the contents are not a manifest
+     */
+    static BackupManifest load(String archive, String yaml) throws InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString(yaml);
+        if (!config.isLong("created") && !config.isInt("created")) {
+            throw new InvalidConfigurationException("Backup manifest without a creation time");
+        }
+        BackupManifest manifest = new BackupManifest(archive, config.getLong("created"), config.getString("previous"),
+                config.getString("journal"));
+        ConfigurationSection section = config.getConfigurationSection("guilds");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                ConfigurationSection entry = section.getConfigurationSection(key);
+                if (entry != null) {
+                    manifest.put(Integer.parseInt(key), entry.getString("name"),
+                            entry.getString("hash"), entry.getString("archive", archive));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    String saveToString() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("created", created);
+        config.set("previous", previous);
+        config.set("journal", journal);
+        guilds.forEach((id, entry) -> {
+            String path = "guilds." + id;
+            config.set(path + ".name", entry.name);
+            config.set(path + ".hash", entry.hash);
+            config.set(path + ".archive", entry.archive);
+        });
+        return config.saveToString();
+    }
+
+    void put(int guildId, String name, String hash, String archive) {
+        guilds.put(guildId, new Entry(name, hash, archive));
+    }
+
+    String getArchive() {
+        return archive;
+    }
+
+    long getCreated() {
+        return created;
+    }
+
+    String getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Gets the journal segment to replay on top of this backup
+     * @return The segment name, or null if the journal was disabled
+     */
+    String getJournal() {
+        return journal;
+    }
+
+    Entry getEntry(int guildId) {
+        return guilds.get(guildId);
+    }
+
+    Map<Integer, Entry> getEntries() {
+        return Collections.unmodifiableMap(guilds);
+    }
+
+    Set<Integer> getGuildIds() {
+        return Collections.unmodifiableSet(guilds.keySet());
+    }
+
+    /**
+     * One guild in a manifest
+     */
+    static final class Entry {
+        private final String name;
+        private final String hash;
+        private final String archive;
+
+        private Entry(String name, String hash, String archive) {
+            this.name = name;
+            this.hash = hash;
+            this.archive = archive;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        String getArchive() {
+            return archive;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.pwing.guilds.storage;
+
+import com.pwing.guilds.guild.ChunkLocation;
+import com.pwing.guilds.guild.ClaimIndex;
+import com.pwing.guilds.util.AtomicFiles;
+import com.pwing.guilds.util.LongObjectMap;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores guild claims in one binary file per world, outside the guild .yml files.
+ * A file is a header followed by fixed-size records of a packed chunk key and the
+ * owning guild id, so claims load with one sequential read and no YAML parsing.
+ * <p>
+ * The store keeps every claim in memory and rewrites only the worlds that changed
+ * on {@link #flush()}. Methods are synchronized because saves run on storage threads.
+ */
+public class ClaimRegionStore {
+    private static final String EXTENSION = ".claims";
+    private static final int MAGIC = 0x50474331; // "PGC1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12; // magic, version, record count
+    private static final int RECORD_SIZE = 12; // packed chunk key, guild id
+
+    private final File folder;
+    private final boolean fsync;
+    private final Map<String, LongObjectMap<Integer>> worlds = new HashMap<>();
+    private final Set<String> dirtyWorlds = new HashSet<>();
+
+    /**
+     * Creates a store backed by a folder of region files
+     * @param folder The folder holding one file per world
+     * @param fsync Whether to force each file to disk before replacing the old one
+     */
+    public ClaimRegionStore(File folder, boolean fsync) {
+        this.folder = folder;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Reads every region file into memory
+     * @return Claims grouped by guild id
+     * @throws IOException if a file cannot be read or is not a region file
+     */
+    public synchronized Map<Integer, List<ChunkLocation>> load() throws IOException {
+        worlds.clear();
+        dirtyWorlds.clear();
+        Map<Integer, List<ChunkLocation>> claims = new HashMap<>();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return claims;
+        }
+
+        for (File file : files) {
+            String worldName = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+            ByteBuffer buffer = readFully(file.toPath());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a claim region file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported claim region version " + version + " in " + file);
+            }
+            int count = buffer.getInt();
+            if (buffer.remaining() < (long) count * RECORD_SIZE) {
+                throw new IOException("Truncated claim region file: " + file);
+            }
+
+            LongObjectMap<Integer> world = new LongObjectMap<>(count);
+            for (int i = 0; i < count; i++) {
+                long key = buffer.getLong();
+                int guildId = buffer.getInt();
+                world.put(key, guildId);
+                claims.computeIfAbsent(guildId, id -> new ArrayList<>())
+                        .add(new ChunkLocation(worldName, ClaimIndex.unpackX(key), ClaimIndex.unpackZ(key)));
+            }
+            worlds.put(worldName, world);
+        }
+        return claims;
+    }
+
+    private static ByteBuffer readFully(Path path) throws IOException {
+        // Read into the heap rather than mapping: a mapped file cannot be replaced
+        // on Windows until the mapping is garbage collected
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of " + path);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Gets every stored claim of one guild
+     * Scans all worlds, so bulk loading should use {@link #load()} instead
+     * @param guildId The guild id
+     * @return The guild's claims
+     */
+    public synchronized List<ChunkLocation> getClaims(int guildId) {
+        List<ChunkLocation> claims = new ArrayList<>();
+        worlds.forEach((worldName, world) -> world.forEach((key, id) -> {
+            if (id == guildId) {
+                claims.add(new ChunkLocation(worldName, ClaimIndex.unpackX(key), ClaimIndex.unpackZ(key)));
+            }
+        }));
+        return claims;
+    }
+
+    /**
+     * Replaces every claim of a guild
+     * @param guildId The guild id
+     * @param chunks The guild's claims
+     */
+    public synchronized void setClaims(int guildId, Collection<ChunkLocation> chunks) {
+        removeGuild(guildId);
+        addClaims(guildId, chunks);
+    }
+
+    /**
+     * Applies claim changes recorded since the guild was last saved
+     * @param guildId The guild id
+     * @param claimed Chunks claimed since the last save
+     * @param unclaimed Chunks unclaimed since the last save
+     */
+    public synchronized void applyChanges(int guildId, Collection<ChunkLocation> claimed, Collection<ChunkLocation> unclaimed) {
+        for (ChunkLocation chunk : unclaimed) {
+            LongObjectMap<Integer> world = worlds.get(chunk.getWorldName());
+            long key = ClaimIndex.pack(chunk.getX(), chunk.getZ());
+            Integer owner = world != null ? world.get(key) : null;
+            // Another guild may have claimed the chunk since; leave its claim alone
+            if (owner != null && owner == guildId) {
+                world.remove(key);
+                dirtyWorlds.add(chunk.getWorldName());
+            }
+        }
+        addClaims(guildId, claimed);
+    }
+
+    /**
+     * Removes every claim of a guild
+     * @param guildId The guild id
+     */
+    public synchronized void removeGuild(int guildId) {
+        worlds.forEach((worldName, world) -> {
+            if (world.removeIf(id -> id == guildId) > 0) {
+                dirtyWorlds.add(worldName);
+            }
+        });
+    }
+
+    private void addClaims(int guildId, Collection<ChunkLocation> chunks) {
+        // One boxed id shared by all of this guild's entries
+        Integer id = guildId;
+        for (ChunkLocation chunk : chunks) {
+            worlds.computeIfAbsent(chunk.getWorldName(), name -> new LongObjectMap<>())
+                    .put(ClaimIndex.pack(chunk.getX(), chunk.getZ()), id);
+            dirtyWorlds.add(chunk.getWorldName());
+        }
+    }
+
+    /**
+     * Checks whether any world has changes that are not written yet
+     * @return true if {@link #flush()} has work to do
+     */
+    public synchronized boolean isDirty() {
+        return !dirtyWorlds.isEmpty();
+    }
+
+    /**
+     * Rewrites the region file of every changed world
+     * Each file is written to a temporary file and moved over the old one, so a
+     * crash leaves either the previous or the new claims, never a partial file
+     * @throws IOException if a file cannot be written; the world stays dirty
+     */
+    public synchronized void flush() throws IOException {
+        if (dirtyWorlds.isEmpty()) {
+            return;
+        }
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        for (String worldName : new ArrayList<>(dirtyWorlds)) {
+            LongObjectMap<Integer> world = worlds.get(worldName);
+            Path target = new File(folder, worldName + EXTENSION).toPath();
+            if (world == null || world.isEmpty()) {
+                Files.deleteIfExists(target);
+            } else {
+                writeWorld(world, target);
+            }
+            dirtyWorlds.remove(worldName);
+        }
+    }
+
+    private void writeWorld(LongObjectMap<Integer> world, Path target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + world.size() * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(world.size());
+        world.forEach((key, guildId) -> buffer.putLong(key).putInt(guildId));
+        buffer.flip();
+        AtomicFiles.write(target, buffer, fsync);
+    }
+}
@@ -6,6 +6,8 @@ import org.bukkit.event.server.PluginDisableEvent;
 import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.api.GuildCreateEvent;
 import com.pwing.guilds.api.GuildDeleteEvent;
+import com.pwing.guilds.guild.GuildSnapshot;
+import org.bukkit.Bukkit;
 import com.pwing.guilds.storage.GuildBackupManager;
 import org.bukkit.configuration.file.YamlConfiguration;
 import java.io.File;
@@ -37,7 +39,8 @@ public class GuildBackupListener implements Listener {
         YamlConfiguration backupConfig = YamlConfiguration.loadConfiguration(backupSettingsFile);
 
         if (backupConfig.getBoolean("backup.auto-backup.on-guild-create")) {
-            backupManager.createCompressedBackup(event.getGuild());
+            GuildSnapshot snapshot = event.getGuild().snapshot();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> backupManager.createCompressedBackup(snapshot));
         }
     }
 
@@ -51,7 +54,8 @@ public class GuildBackupListener implements Listener {
         YamlConfiguration backupConfig = YamlConfiguration.loadConfiguration(backupSettingsFile);
 
         if (backupConfig.getBoolean("backup.auto-backup.on-guild-delete")) {
-            backupManager.createCompressedBackup(event.getGuild());
+            GuildSnapshot snapshot = event.getGuild().snapshot();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> backupManager.createCompressedBackup(snapshot));
         }
     }
 
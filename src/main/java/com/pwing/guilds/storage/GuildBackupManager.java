@@ -1,38 +1,82 @@
 package com.pwing.guilds.storage;
 
 import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.guild.ChunkLocation;
 import com.pwing.guilds.guild.Guild;
+import com.pwing.guilds.guild.GuildHome;
+import com.pwing.guilds.guild.GuildSnapshot;
+import com.pwing.guilds.util.AtomicFiles;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.configuration.InvalidConfigurationException;
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.Comparator;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 import java.util.zip.ZipEntry;
 import java.io.OutputStreamWriter;
 import java.io.BufferedWriter;
-import java.util.Set;
 
 /**
  * Manages guild data backups including scheduled backups and restoration.
+ * Scheduled backups are incremental: each run writes one archive holding a manifest
+ * of all guilds and the content of only those whose hash changed since the last run.
+ * Changes made between runs go to a {@link GuildJournal}, which restores replay on top
+ * of the newest run before the requested point in time.
  */
 public class GuildBackupManager {
+    private static final DateTimeFormatter ARCHIVE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS").withZone(ZoneId.systemDefault());
+    private static final String ARCHIVE_EXTENSION = ".zip";
+
     private final PwingGuilds plugin;
     private final File backupFolder;
+    private final File incrementalFolder;
     private final int compressionLevel;
+    private final int incrementalCompressionLevel;
     private final long backupInterval;
     private final int retentionDays;
     private final int minBackups;
     private final SimpleDateFormat dateFormat;
     private BukkitTask backupTask;
+    private BackupManifest lastManifest;
+    private final GuildJournal journal;
 
     /**
      * Creates a new backup manager instance
@@ -42,11 +86,15 @@ public class GuildBackupManager {
     public GuildBackupManager(PwingGuilds plugin) {
         this.plugin = plugin;
         this.backupFolder = new File(plugin.getDataFolder(), "backups");
+        this.incrementalFolder = new File(backupFolder, "incremental");
 
         File backupSettingsFile = new File(plugin.getDataFolder(), "backup-settings.yml");
         YamlConfiguration backupConfig = YamlConfiguration.loadConfiguration(backupSettingsFile);
 
         this.compressionLevel = backupConfig.getInt("backup.compression-level", 9);
+        // Runs compress every changed guild, so favour speed; archives are small anyway
+        this.incrementalCompressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION,
+                backupConfig.getInt("backup.incremental.compression-level", Deflater.BEST_SPEED)));
         this.backupInterval = backupConfig.getLong("backup.interval", 60) * 1200L; // Convert to ticks
         this.retentionDays = backupConfig.getInt("backup.retention.days", 7);
         this.minBackups = backupConfig.getInt("backup.retention.keep-minimum", 5);
@@ -55,6 +103,17 @@ public class GuildBackupManager {
         if (!backupFolder.exists()) {
             backupFolder.mkdirs();
         }
+        if (!incrementalFolder.exists()) {
+            incrementalFolder.mkdirs();
+        }
+
+        if (backupConfig.getBoolean("backup.journal.enabled", true)) {
+            this.journal = new GuildJournal(plugin, new File(backupFolder, "journal"),
+                    backupConfig.getBoolean("backup.journal.fsync", true));
+            this.journal.start();
+        } else {
+            this.journal = null;
+        }
 
         if (backupConfig.getBoolean("backup.enabled", true)) {
             startScheduledBackups();
@@ -66,38 +125,406 @@ public class GuildBackupManager {
             backupTask.cancel();
         }
 
-        backupTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            plugin.getLogger().info("Starting scheduled guild backup...");
-            backupAllGuilds();
-            cleanupOldBackups();
+        // Snapshots are taken on the main thread; compressing and writing them runs async
+        backupTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            List<GuildSnapshot> snapshots = snapshotAllGuilds();
+            // Changes from here on go into a new segment, so the backup and the
+            // journal meet exactly at the snapshots
+            String segment = journal != null ? journal.rotate() : null;
+            long capturedAt = System.currentTimeMillis();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                plugin.getLogger().info("Starting scheduled guild backup...");
+                runIncrementalBackup(snapshots, capturedAt, segment);
+                cleanupOldBackups();
+            });
         }, backupInterval, backupInterval);
     }
 
     /**
-     * Stops the scheduled backup task
+     * Stops the scheduled backup task and closes the journal
      */
     public void shutdown() {
         if (backupTask != null) {
             backupTask.cancel();
             backupTask = null;
         }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Gets the journal that records guild changes between backups
+     * @return The journal, or null if it is disabled
+     */
+    public GuildJournal getJournal() {
+        return journal;
     }
 
     /**
-     * Creates backups for all guilds
+     * Runs an incremental backup of all guilds on the calling thread
+     * Must run on the main thread, where the guilds are snapshotted
      */
     public void backupAllGuilds() {
+        List<GuildSnapshot> snapshots = snapshotAllGuilds();
+        String segment = journal != null ? journal.rotate() : null;
+        runIncrementalBackup(snapshots, System.currentTimeMillis(), segment);
+    }
+
+    private List<GuildSnapshot> snapshotAllGuilds() {
+        List<GuildSnapshot> snapshots = new ArrayList<>();
         for (Guild guild : plugin.getGuildManager().getGuilds()) {
-            createCompressedBackup(guild);
+            snapshots.add(guild.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Writes one archive with a manifest of every guild and the content of the guilds
+     * that changed since the previous run; nothing is written if no guild changed
+     * Guilds are serialized, hashed and compressed on a worker pool while this thread
+     * appends the finished records to the archive in order
+     * @param snapshots Snapshots of all guilds
+     * @param capturedAt When the snapshots were taken
+     * @param segment The journal segment started with the snapshots, or null
+     */
+    private synchronized void runIncrementalBackup(List<GuildSnapshot> snapshots, long capturedAt, String segment) {
+        long start = System.currentTimeMillis();
+        BackupManifest previous = getLastManifest();
+        String archiveName = ARCHIVE_FORMAT.format(Instant.ofEpochMilli(capturedAt)) + ARCHIVE_EXTENSION;
+        BackupManifest manifest = new BackupManifest(archiveName, capturedAt,
+                previous != null ? previous.getArchive() : null, segment);
+        File archive = new File(incrementalFolder, archiveName);
+
+        int threads = Math.max(1, Math.min(snapshots.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "PwingGuilds-Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int[] changed = new int[1];
+        try {
+            AtomicFiles.write(archive.toPath(), out -> {
+                ZipOutputStream zos = new ZipOutputStream(out);
+                zos.setLevel(incrementalCompressionLevel);
+                // Only a few records per worker are in flight, so memory stays flat
+                // however many guilds there are
+                int window = threads * 4;
+                Deque<Future<BackupRecord>> inFlight = new ArrayDeque<>(window);
+                Iterator<GuildSnapshot> pending = snapshots.iterator();
+                while (pending.hasNext() || !inFlight.isEmpty()) {
+                    while (pending.hasNext() && inFlight.size() < window) {
+                        GuildSnapshot snapshot = pending.next();
+                        BackupManifest.Entry last = previous != null ? previous.getEntry(snapshot.getId()) : null;
+                        inFlight.add(pool.submit(() -> encode(snapshot, last)));
+                    }
+                    BackupRecord record = await(inFlight.poll());
+                    if (record.compressed == null) {
+                        manifest.put(record.id, record.name, record.hash, record.archive);
+                    } else {
+                        manifest.put(record.id, record.name, record.hash, archiveName);
+                        writeStored(zos, guildEntryName(record.id), record.compressed);
+                        changed[0]++;
+                    }
+                }
+                if (changed[0] == 0 && previous != null && previous.getGuildIds().equals(manifest.getGuildIds())) {
+                    // Abandons the temporary file
+                    throw new CancellationException();
+                }
+                zos.putNextEntry(new ZipEntry(BackupManifest.ENTRY_NAME));
+                zos.write(manifest.saveToString().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+                zos.finish();
+            }, false);
+        } catch (CancellationException e) {
+            plugin.getLogger().info("No guild changed since the last backup, nothing written");
+            return;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to write backup archive " + archiveName, e);
+            return;
+        } finally {
+            pool.shutdownNow();
+        }
+        lastManifest = manifest;
+        plugin.getLogger().info("Backed up " + changed[0] + " changed of " + snapshots.size() + " guilds to "
+                + archiveName + " on " + threads + " threads in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Serializes and hashes a guild, and compresses it unless it is unchanged since the last run
+     * Runs on the backup pool
+     */
+    private BackupRecord encode(GuildSnapshot snapshot, BackupManifest.Entry last) throws IOException {
+        byte[] content = toBackupYaml(snapshot).getBytes(StandardCharsets.UTF_8);
+        String hash = hash(content);
+        if (last != null && last.getHash().equals(hash)) {
+            return new BackupRecord(snapshot.getId(), snapshot.getName(), hash, last.getArchive(), null);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzos = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(incrementalCompressionLevel);
+            }
+        }) {
+            gzos.write(content);
+        }
+        return new BackupRecord(snapshot.getId(), snapshot.getName(), hash, null, buffer.toByteArray());
+    }
+
+    private static BackupRecord await(Future<BackupRecord> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing backup");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to encode guild for backup", e.getCause());
         }
     }
 
+    /**
+     * Appends already compressed data without deflating it a second time
+     */
+    private static void writeStored(ZipOutputStream zos, String name, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private static String guildEntryName(int guildId) {
+        return "guilds/" + guildId + ".yml.gz";
+    }
+
+    /**
+     * Serializes a snapshot with every collection in a fixed order, so unchanged
+     * guilds always produce the same bytes and the same hash
+     */
+    private static String toBackupYaml(GuildSnapshot snapshot) {
+        Map<String, Object> data = new TreeMap<>(snapshot.serialize());
+        data.put("members", snapshot.getMembers().stream().map(UUID::toString).sorted().toList());
+        data.put("claims", snapshot.getClaimedChunks().stream()
+                .sorted(Comparator.comparing(ChunkLocation::getWorldName)
+                        .thenComparingInt(ChunkLocation::getX)
+                        .thenComparingInt(ChunkLocation::getZ))
+                .map(chunk -> new TreeMap<>(chunk.serialize()))
+                .toList());
+        Map<String, Object> homes = new TreeMap<>();
+        for (Map.Entry<String, GuildHome> home : snapshot.getHomes().entrySet()) {
+            Map<String, Object> homeData = new TreeMap<>(home.getValue().serialize());
+            homeData.put("location", new TreeMap<>(home.getValue().getLocation().serialize()));
+            homes.put(home.getKey(), homeData);
+        }
+        data.put("homes", homes);
+        data.put("builtStructures", snapshot.getBuiltStructures().stream().sorted().toList());
+
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("guild", data);
+        return config.saveToString();
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private BackupManifest getLastManifest() {
+        if (lastManifest == null) {
+            File[] archives = listArchives();
+            // Newest first; an unreadable archive is skipped, the next run then stores everything again
+            for (int i = archives.length - 1; i >= 0 && lastManifest == null; i--) {
+                try (ZipFile zip = new ZipFile(archives[i])) {
+                    lastManifest = readManifest(zip, archives[i].getName());
+                } catch (IOException | InvalidConfigurationException e) {
+                    plugin.getLogger().warning("Skipping unreadable backup archive " + archives[i].getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        return lastManifest;
+    }
+
+    private File[] listArchives() {
+        File[] archives = incrementalFolder.listFiles((dir, name) -> name.endsWith(ARCHIVE_EXTENSION));
+        if (archives == null) {
+            return new File[0];
+        }
+        // Names are timestamps, so name order is age order
+        Arrays.sort(archives, Comparator.comparing(File::getName));
+        return archives;
+    }
+
+    private static BackupManifest readManifest(ZipFile zip, String archiveName) throws IOException, InvalidConfigurationException {
+        ZipEntry entry = zip.getEntry(BackupManifest.ENTRY_NAME);
+        if (entry == null) {
+            throw new InvalidConfigurationException("No manifest in " + archiveName);
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return BackupManifest.load(archiveName, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Restores every guild to its state at a point in time, using the newest
+     * incremental backup taken at or before it and the journal recorded after it
+     * Guilds created after that point are left alone
+     * Must run on the main thread
+     * @param timestamp The point in time, in epoch milliseconds
+     * @return The number of guilds restored, or -1 if no backup is that old
+     */
+    public int restoreToPointInTime(long timestamp) {
+        return restoreFromManifest(timestamp, null);
+    }
+
+    /**
+     * Restores one guild to its state at a point in time
+     * Must run on the main thread
+     * @param guildId The id of the guild
+     * @param timestamp The point in time, in epoch milliseconds
+     * @return true if the guild existed at that point and was restored
+     */
+    public boolean restoreGuildToPointInTime(int guildId, long timestamp) {
+        return restoreFromManifest(timestamp, guildId) > 0;
+    }
+
+    private synchronized int restoreFromManifest(long timestamp, Integer onlyGuild) {
+        BackupManifest manifest = findManifestAt(timestamp);
+        if (manifest == null) {
+            return -1;
+        }
+        Map<Integer, RestoredGuild> states = new TreeMap<>();
+        Map<String, ZipFile> archives = new HashMap<>();
+        try {
+            for (Map.Entry<Integer, BackupManifest.Entry> entry : manifest.getEntries().entrySet()) {
+                if (onlyGuild != null && !onlyGuild.equals(entry.getKey())) {
+                    continue;
+                }
+                try {
+                    ZipFile zip = archives.get(entry.getValue().getArchive());
+                    if (zip == null) {
+                        zip = new ZipFile(new File(incrementalFolder, entry.getValue().getArchive()));
+                        archives.put(entry.getValue().getArchive(), zip);
+                    }
+                    ZipEntry zipEntry = zip.getEntry(guildEntryName(entry.getKey()));
+                    if (zipEntry == null) {
+                        throw new IOException("Missing entry for guild " + entry.getKey());
+                    }
+                    try (InputStream in = new GZIPInputStream(zip.getInputStream(zipEntry))) {
+                        states.put(entry.getKey(), RestoredGuild.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+                    }
+                } catch (IOException | InvalidConfigurationException | RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to read guild " + entry.getValue().getName()
+                            + " from " + entry.getValue().getArchive(), e);
+                }
+            }
+        } finally {
+            for (ZipFile zip : archives.values()) {
+                try {
+                    zip.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        int[] replayed = new int[1];
+        if (journal != null && manifest.getJournal() != null) {
+            journal.flush();
+            journal.replay(manifest.getJournal(), timestamp, record -> {
+                if (onlyGuild == null || onlyGuild == record.getGuildId()) {
+                    applyRecord(states, record);
+                    replayed[0]++;
+                }
+            });
+        }
+
+        int restored = 0;
+        for (Map.Entry<Integer, RestoredGuild> entry : states.entrySet()) {
+            try {
+                Guild guild = entry.getValue().build(plugin);
+                plugin.getGuildManager().addGuild(guild);
+                if (journal != null) {
+                    // Replays from later backups must start from the restored state
+                    journal.guildState(guild.getId(), toBackupYaml(guild.snapshot()));
+                }
+                restored++;
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to restore guild " + entry.getKey(), e);
+            }
+        }
+        plugin.getLogger().info("Restored " + restored + " guilds from the backup of " + manifest.getArchive()
+                + " and " + replayed[0] + " journal records");
+        return restored;
+    }
+
+    private void applyRecord(Map<Integer, RestoredGuild> states, GuildJournal.Record record) {
+        int guildId = record.getGuildId();
+        switch (record.getType()) {
+            case GuildJournal.CREATE -> states.put(guildId, RestoredGuild.create(guildId, record.getText(), record.getPlayer()));
+            case GuildJournal.DELETE -> states.remove(guildId);
+            case GuildJournal.STATE -> {
+                try {
+                    states.put(guildId, RestoredGuild.parse(record.getText()));
+                } catch (InvalidConfigurationException e) {
+                    plugin.getLogger().warning("Skipping unreadable journaled state of guild " + guildId);
+                }
+            }
+            default -> {
+                RestoredGuild state = states.get(guildId);
+                if (state != null) {
+                    state.apply(record);
+                }
+            }
+        }
+    }
+
+    private BackupManifest findManifestAt(long timestamp) {
+        File[] archives = listArchives();
+        for (int i = archives.length - 1; i >= 0; i--) {
+            try (ZipFile zip = new ZipFile(archives[i])) {
+                BackupManifest manifest = readManifest(zip, archives[i].getName());
+                if (manifest.getCreated() <= timestamp) {
+                    return manifest;
+                }
+            } catch (IOException | InvalidConfigurationException e) {
+                plugin.getLogger().warning("Skipping unreadable backup archive " + archives[i].getName() + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> sectionToMap(ConfigurationSection section) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String key : section.getKeys(false)) {
+            Object value = section.get(key);
+            if (value instanceof ConfigurationSection child) {
+                value = sectionToMap(child);
+            } else if (value instanceof List<?> list) {
+                List<Object> converted = new ArrayList<>(list.size());
+                for (Object element : list) {
+                    converted.add(element instanceof ConfigurationSection child ? sectionToMap(child) : element);
+                }
+                value = converted;
+            }
+            map.put(key, value);
+        }
+        return map;
+    }
+
     /**
      * Creates a compressed backup file for a guild
+     * Safe to call from any thread
      * 
-     * @param guild The guild to backup
+     * @param guild Snapshot of the guild to backup
      */
-    public void createCompressedBackup(Guild guild) {
+    public void createCompressedBackup(GuildSnapshot guild) {
         if (guild == null) {
             plugin.getLogger().warning("Guild is null, skipping backup.");
             return;
@@ -160,6 +587,8 @@ public class GuildBackupManager {
     }
 
     private void cleanupOldBackups() {
+        cleanupOldArchives();
+
         File[] backups = backupFolder.listFiles((dir, name) -> name.endsWith(".gz"));
         if (backups == null || backups.length <= minBackups)
             return;
@@ -175,13 +604,54 @@ public class GuildBackupManager {
         }
     }
 
+    /**
+     * Deletes incremental archives past retention that no kept manifest still points into
+     */
+    private synchronized void cleanupOldArchives() {
+        File[] archives = listArchives();
+        long cutoffTime = System.currentTimeMillis() - (retentionDays * 24 * 60 * 60 * 1000L);
+        Set<String> referenced = new HashSet<>();
+        List<File> expired = new ArrayList<>();
+        String oldestJournal = null;
+        for (int i = archives.length - 1; i >= 0; i--) {
+            boolean keep = archives.length - i <= minBackups || archives[i].lastModified() >= cutoffTime;
+            if (!keep) {
+                expired.add(archives[i]);
+                continue;
+            }
+            try (ZipFile zip = new ZipFile(archives[i])) {
+                BackupManifest manifest = readManifest(zip, archives[i].getName());
+                manifest.getEntries().values().forEach(entry -> referenced.add(entry.getArchive()));
+                if (manifest.getJournal() != null) {
+                    oldestJournal = manifest.getJournal();
+                }
+            } catch (IOException | InvalidConfigurationException e) {
+                // Without its manifest we cannot tell what it needs, so delete nothing this time
+                plugin.getLogger().warning("Skipping backup cleanup, unreadable archive " + archives[i].getName());
+                return;
+            }
+        }
+        for (File archive : expired) {
+            if (!referenced.contains(archive.getName())) {
+                archive.delete();
+            }
+        }
+        // Journal segments older than every kept backup can no longer be replayed
+        if (journal != null && oldestJournal != null) {
+            int deleted = journal.deleteSegmentsBefore(oldestJournal);
+            if (deleted > 0) {
+                plugin.getLogger().info("Compacted the guild journal, deleted " + deleted + " old segments");
+            }
+        }
+    }
+
     /**
      * Creates a backup of a guild's data
      * 
-     * @param guild  The guild to backup
+     * @param guild  Snapshot of the guild to backup
      * @param reason The reason for the backup
      */
-    public void createBackup(Guild guild, String reason) {
+    public void createBackup(GuildSnapshot guild, String reason) {
         if (plugin.getConfig().getString("storage.type").equalsIgnoreCase("mysql")) {
             plugin.getLogger().info("Skipping backup for guild: " + guild.getName() + " as storage type is SQL.");
             return;
@@ -210,13 +680,13 @@ public class GuildBackupManager {
     /**
      * Creates a compressed backup file for a set of guilds
      * 
-     * @param guilds         The set of guilds to backup
+     * @param guilds         Snapshots of the guilds to backup
      * @param backupFilePath The path to the backup file
      * @throws IOException If an I/O error occurs
      */
-    public void createCompressedBackup(Set<Guild> guilds, String backupFilePath) throws IOException {
+    public void createCompressedBackup(Collection<GuildSnapshot> guilds, String backupFilePath) throws IOException {
         try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(backupFilePath))) {
-            for (Guild guild : guilds) {
+            for (GuildSnapshot guild : guilds) {
                 if (guild == null)
                     continue;
                 ZipEntry entry = new ZipEntry(guild.getName() + ".json");
@@ -228,6 +698,94 @@ public class GuildBackupManager {
             }
         }
     }
-}
 
+    /**
+     * One guild on its way into an archive
+     */
+    private static final class BackupRecord {
+        private final int id;
+        private final String name;
+        private final String hash;
+        private final String archive;
+        private final byte[] compressed;
+
+        private BackupRecord(int id, String name, String hash, String archive, byte[] compressed) {
+            this.id = id;
+            this.name = name;
+            this.hash = hash;
+            this.archive = archive;
+            this.compressed = compressed;
+        }
+    }
+
+    /**
+     * A guild read from a backup, with the journal applied before it is built
+     */
+    private static final class RestoredGuild {
+        private final Map<String, Object> data;
+        private final Set<String> members = new LinkedHashSet<>();
+        private final Set<ChunkLocation> claims = new LinkedHashSet<>();
+
+        private RestoredGuild(Map<String, Object> data) {
+            this.data = data;
+        }
+
+        private static RestoredGuild parse(String yaml) throws InvalidConfigurationException {
+            YamlConfiguration config = new YamlConfiguration();
+            config.loadFromString(yaml);
+            ConfigurationSection section = config.getConfigurationSection("guild");
+            if (section == null) {
+                throw new InvalidConfigurationException("No guild section");
+            }
+            RestoredGuild guild = new RestoredGuild(sectionToMap(section));
+            if (guild.data.remove("members") instanceof List<?> members) {
+                members.forEach(member -> guild.members.add(String.valueOf(member)));
+            }
+            if (guild.data.remove("claims") instanceof List<?> claims) {
+                for (Object claim : claims) {
+                    if (claim instanceof Map<?, ?> claimData) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> chunk = (Map<String, Object>) claimData;
+                        guild.claims.add(ChunkLocation.deserialize(chunk));
+                    }
+                }
+            }
+            return guild;
+        }
 
+        private static RestoredGuild create(int id, String name, UUID owner) {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("id", id);
+            data.put("name", name);
+            data.put("owner", owner.toString());
+            data.put("level", 1);
+            data.put("exp", 0L);
+            RestoredGuild guild = new RestoredGuild(data);
+            guild.members.add(owner.toString());
+            return guild;
+        }
+
+        private void apply(GuildJournal.Record record) {
+            switch (record.getType()) {
+                case GuildJournal.RENAME -> data.put("name", record.getText());
+                case GuildJournal.CLAIM -> claims.add(record.getChunk());
+                case GuildJournal.UNCLAIM -> claims.remove(record.getChunk());
+                case GuildJournal.JOIN -> members.add(record.getPlayer().toString());
+                case GuildJournal.LEAVE -> members.remove(record.getPlayer().toString());
+                case GuildJournal.EXP -> data.put("exp", record.getValue());
+                case GuildJournal.LEVEL -> data.put("level", (int) record.getValue());
+                default -> {
+                }
+            }
+        }
+
+        private Guild build(PwingGuilds plugin) {
+            data.put("members", new ArrayList<>(members));
+            Guild guild = Guild.deserialize(plugin, data);
+            // Claims are restored as stored, without the adjacency and limit checks of claiming
+            claims.forEach(guild::restoreClaim);
+            guild.requestFullSave();
+            return guild;
+        }
+    }
+}
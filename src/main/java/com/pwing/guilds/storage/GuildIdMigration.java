@@ -0,0 +1,77 @@
+package com.pwing.guilds.storage;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Moves SQL tables from guild names to numeric guild ids.
+ * Older versions keyed every table by {@code guild_name}; this numbers the existing
+ * guilds once and rewrites child tables to reference {@code guild_id} instead.
+ * Each step checks the current schema first, so running it again does nothing.
+ */
+public final class GuildIdMigration {
+
+    private GuildIdMigration() {
+    }
+
+    /**
+     * Checks whether a table has a column
+     * @param conn Active database connection
+     * @param table The table name
+     * @param column The column name
+     * @return true if the column exists
+     * @throws SQLException if database error occurs
+     */
+    public static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Adds an id to every guild in a name-keyed guilds table and makes it the primary key
+     * @param conn Active database connection
+     * @return true if the table was migrated, false if it already had ids
+     * @throws SQLException if database error occurs
+     */
+    public static boolean migrateGuildsTable(Connection conn) throws SQLException {
+        if (hasColumn(conn, "guilds", "id")) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            // AUTO_INCREMENT numbers the existing rows; new ids are assigned by the plugin
+            stmt.execute("ALTER TABLE guilds ADD COLUMN id INT NOT NULL AUTO_INCREMENT UNIQUE FIRST");
+            stmt.execute("ALTER TABLE guilds DROP PRIMARY KEY, ADD PRIMARY KEY (id), ADD UNIQUE KEY guilds_name (name)");
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the guild_name column of a child table with guild_id
+     * Rows pointing at guilds that no longer exist are dropped
+     * @param conn Active database connection
+     * @param table The child table
+     * @param primaryKey The new primary key columns, e.g. {@code "guild_id, uuid"}
+     * @return Number of orphaned rows removed, or -1 if the table was already migrated
+     * @throws SQLException if database error occurs
+     */
+    public static int migrateChildTable(Connection conn, String table, String primaryKey) throws SQLException {
+        if (!hasColumn(conn, table, "guild_name")) {
+            return -1;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            if (!hasColumn(conn, table, "guild_id")) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN guild_id INT NOT NULL DEFAULT 0 FIRST");
+            }
+            stmt.executeUpdate("UPDATE " + table + " c JOIN guilds g ON c.guild_name = g.name SET c.guild_id = g.id");
+            int orphans = stmt.executeUpdate("DELETE FROM " + table + " WHERE guild_id = 0");
+            stmt.execute("ALTER TABLE " + table + " DROP PRIMARY KEY, DROP COLUMN guild_name, " +
+                    "ADD PRIMARY KEY (" + primaryKey + "), ALTER guild_id DROP DEFAULT");
+            return orphans;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.pwing.guilds.storage;
+
+import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.guild.ChunkLocation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the guild changes made between backups.
+ * Records are encoded on the thread that made the change and written by a single
+ * journal thread, which commits everything queued since its previous write with one
+ * write and one fsync. The log is split into segments at every backup, so a backup
+ * names the segment to replay from and older segments can be deleted once no kept
+ * backup needs them.
+ * <p>
+ * Every record holds the new value rather than a difference, so replaying a record
+ * twice or on top of a newer state gives the same result.
+ */
+public class GuildJournal {
+    static final byte CREATE = 1;
+    static final byte DELETE = 2;
+    static final byte RENAME = 3;
+    static final byte CLAIM = 4;
+    static final byte UNCLAIM = 5;
+    static final byte JOIN = 6;
+    static final byte LEAVE = 7;
+    static final byte EXP = 8;
+    static final byte LEVEL = 9;
+    static final byte STATE = 10;
+
+    private static final String EXTENSION = ".journal";
+    private static final int RECORD_HEADER_SIZE = 8; // body length, body crc
+    private static final Object STOP = new Object();
+
+    private final PwingGuilds plugin;
+    private final File folder;
+    private final boolean fsync;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private long lastSegmentTime;
+    private volatile String currentSegment;
+    private Thread writer;
+
+    /**
+     * Creates a journal in a folder of segment files
+     * @param plugin The plugin instance
+     * @param folder The folder holding the segments
+     * @param fsync Whether to force every commit to disk
+     */
+    public GuildJournal(PwingGuilds plugin, File folder, boolean fsync) {
+        this.plugin = plugin;
+        this.folder = folder;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Opens a new segment and starts the journal thread
+     */
+    public void start() {
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        rotate();
+        writer = new Thread(this::run, "PwingGuilds-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Commits everything queued and stops the journal thread
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        queue.add(STOP);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Starts a new segment; records appended afterwards go into it
+     * Call on the main thread together with taking the snapshots of a backup
+     * @return The name of the new segment
+     */
+    public synchronized String rotate() {
+        long time = Math.max(System.currentTimeMillis(), lastSegmentTime + 1);
+        lastSegmentTime = time;
+        // Zero padded so that name order is time order
+        String segment = String.format("%015d", time) + EXTENSION;
+        currentSegment = segment;
+        queue.add(new Rotation(segment));
+        return segment;
+    }
+
+    /**
+     * Waits until every record appended so far is written
+     */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+        queue.add(committed);
+        committed.completeOnTimeout(null, 10, TimeUnit.SECONDS).join();
+    }
+
+    /**
+     * Records a new guild
+     * @param guildId The guild id
+     * @param name The guild name
+     * @param owner The owner, who is also the only member
+     */
+    public void guildCreated(int guildId, String name, UUID owner) {
+        append(CREATE, guildId, out -> {
+            writeString(out, name);
+            writeUuid(out, owner);
+        });
+    }
+
+    /**
+     * Records a deleted guild
+     * @param guildId The guild id
+     */
+    public void guildDeleted(int guildId) {
+        append(DELETE, guildId, null);
+    }
+
+    /**
+     * Records a rename
+     * @param guildId The guild id
+     * @param newName The new name
+     */
+    public void guildRenamed(int guildId, String newName) {
+        append(RENAME, guildId, out -> writeString(out, newName));
+    }
+
+    /**
+     * Records a claimed chunk
+     * @param guildId The guild id
+     * @param chunk The chunk
+     */
+    public void chunkClaimed(int guildId, ChunkLocation chunk) {
+        append(CLAIM, guildId, out -> writeChunk(out, chunk));
+    }
+
+    /**
+     * Records an unclaimed chunk
+     * @param guildId The guild id
+     * @param chunk The chunk
+     */
+    public void chunkUnclaimed(int guildId, ChunkLocation chunk) {
+        append(UNCLAIM, guildId, out -> writeChunk(out, chunk));
+    }
+
+    /**
+     * Records a member joining
+     * @param guildId The guild id
+     * @param player The member
+     */
+    public void memberJoined(int guildId, UUID player) {
+        append(JOIN, guildId, out -> writeUuid(out, player));
+    }
+
+    /**
+     * Records a member leaving
+     * @param guildId The guild id
+     * @param player The member
+     */
+    public void memberLeft(int guildId, UUID player) {
+        append(LEAVE, guildId, out -> writeUuid(out, player));
+    }
+
+    /**
+     * Records a new experience total
+     * @param guildId The guild id
+     * @param exp The experience after the change
+     */
+    public void expChanged(int guildId, long exp) {
+        append(EXP, guildId, out -> out.writeLong(exp));
+    }
+
+    /**
+     * Records a new level
+     * @param guildId The guild id
+     * @param level The level after the change
+     */
+    public void levelChanged(int guildId, int level) {
+        append(LEVEL, guildId, out -> out.writeInt(level));
+    }
+
+    /**
+     * Records the complete state of a guild, e.g. after it was restored from a backup
+     * @param guildId The guild id
+     * @param yaml The guild in backup format
+     */
+    void guildState(int guildId, String yaml) {
+        append(STATE, guildId, out -> {
+            byte[] bytes = yaml.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        });
+    }
+
+    private void append(byte type, int guildId, Payload payload) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // body length and crc, filled in below
+            out.writeInt(0);
+            out.writeLong(System.currentTimeMillis());
+            out.writeByte(type);
+            out.writeInt(guildId);
+            if (payload != null) {
+                payload.write(out);
+            }
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+            ByteBuffer.wrap(record)
+                    .putInt(0, record.length - RECORD_HEADER_SIZE)
+                    .putInt(4, (int) crc.getValue());
+            queue.add(record);
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeChunk(DataOutputStream out, ChunkLocation chunk) throws IOException {
+        writeString(out, chunk.getWorldName());
+        out.writeInt(chunk.getX());
+        out.writeInt(chunk.getZ());
+    }
+
+    /**
+     * Writes queued records until stopped
+     * Whatever queued up while the previous batch was being written goes out as the
+     * next batch, so under load many records share one write and one fsync
+     */
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        List<ByteBuffer> records = new ArrayList<>();
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        FileChannel channel = null;
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            for (Object item : batch) {
+                if (item == STOP) {
+                    stopped = true;
+                } else if (item instanceof byte[] record) {
+                    records.add(ByteBuffer.wrap(record));
+                } else if (item instanceof Rotation rotation) {
+                    commit(channel, records);
+                    closeQuietly(channel);
+                    channel = open(rotation.segment);
+                } else if (item instanceof CompletableFuture<?> future) {
+                    @SuppressWarnings("unchecked")
+                    CompletableFuture<Void> committed = (CompletableFuture<Void>) future;
+                    waiting.add(committed);
+                }
+            }
+            batch.clear();
+            commit(channel, records);
+            waiting.forEach(future -> future.complete(null));
+            waiting.clear();
+        }
+        closeQuietly(channel);
+    }
+
+    private FileChannel open(String segment) {
+        try {
+            return FileChannel.open(new File(folder, segment).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to open journal segment " + segment, e);
+            return null;
+        }
+    }
+
+    private void commit(FileChannel channel, List<ByteBuffer> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (channel == null) {
+            plugin.getLogger().severe("No journal segment is open, dropped " + records.size() + " records");
+            records.clear();
+            return;
+        }
+        try {
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to write " + records.size() + " journal records", e);
+        }
+        records.clear();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a segment and every later one, oldest first
+     * Call {@link #flush()} first to include records that are still queued
+     * @param fromSegment The first segment to read
+     * @param until Records made after this time, in epoch milliseconds, are skipped
+     * @param consumer Receives the records
+     */
+    void replay(String fromSegment, long until, Consumer<Record> consumer) {
+        for (File segment : listSegments()) {
+            if (segment.getName().compareTo(fromSegment) < 0) {
+                continue;
+            }
+            ByteBuffer buffer;
+            try {
+                buffer = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to read journal segment " + segment.getName(), e);
+                continue;
+            }
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                int crc = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    // A crash mid-write leaves a torn record at the end
+                    plugin.getLogger().warning("Truncated record in journal segment " + segment.getName());
+                    break;
+                }
+                CRC32 actual = new CRC32();
+                actual.update(buffer.array(), buffer.position(), length);
+                if ((int) actual.getValue() != crc) {
+                    plugin.getLogger().warning("Corrupt record in journal segment " + segment.getName());
+                    break;
+                }
+                ByteBuffer body = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                Record record = Record.read(body);
+                if (record.getTime() <= until) {
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments before a segment that is still needed
+     * @param keepFrom The oldest segment to keep
+     * @return The number of deleted segments
+     */
+    int deleteSegmentsBefore(String keepFrom) {
+        int deleted = 0;
+        for (File segment : listSegments()) {
+            if (segment.getName().compareTo(keepFrom) < 0
+                    && !segment.getName().equals(currentSegment) && segment.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private File[] listSegments() {
+        File[] segments = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments, (a, b) -> a.getName().compareTo(b.getName()));
+        return segments;
+    }
+
+    @FunctionalInterface
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static final class Rotation {
+        private final String segment;
+
+        private Rotation(String segment) {
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * One decoded journal record
+     */
+    static final class Record {
+        private final long time;
+        private final byte type;
+        private final int guildId;
+        private String text;
+        private UUID player;
+        private ChunkLocation chunk;
+        private long value;
+
+        private Record(long time, byte type, int guildId) {
+            this.time = time;
+            this.type = type;
+            this.guildId = guildId;
+        }
+
+        private static Record read(ByteBuffer body) {
+            Record record = new Record(body.getLong(), body.get(), body.getInt());
+            switch (record.type) {
+                case CREATE -> {
+                    record.text = readString(body);
+                    record.player = new UUID(body.getLong(), body.getLong());
+                }
+                case RENAME -> record.text = readString(body);
+                case CLAIM, UNCLAIM -> record.chunk = new ChunkLocation(readString(body), body.getInt(), body.getInt());
+                case JOIN, LEAVE -> record.player = new UUID(body.getLong(), body.getLong());
+                case EXP -> record.value = body.getLong();
+                case LEVEL -> record.value = body.getInt();
+                case STATE -> {
+                    byte[] bytes = new byte[body.getInt()];
+                    body.get(bytes);
+                    record.text = new String(bytes, StandardCharsets.UTF_8);
+                }
+                default -> {
+                }
+            }
+            return record;
+        }
+
+        private static String readString(ByteBuffer body) {
+            byte[] bytes = new byte[body.getShort() & 0xFFFF];
+            body.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long getTime() {
+            return time;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        int getGuildId() {
+            return guildId;
+        }
+
+        /**
+         * Gets the name of a create or rename record, or the guild of a state record
+         */
+        String getText() {
+            return text;
+        }
+
+        UUID getPlayer() {
+            return player;
+        }
+
+        ChunkLocation getChunk() {
+            return chunk;
+        }
+
+        long getValue() {
+            return value;
+        }
+    }
+}
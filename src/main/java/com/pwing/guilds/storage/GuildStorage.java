@@ -2,9 +2,11 @@ package com.pwing.guilds.storage;
 
 import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.guild.GuildManager;
-import org.bukkit.configuration.ConfigurationSection;
+import com.pwing.guilds.guild.GuildSnapshot;
 import org.bukkit.inventory.ItemStack;
+import java.util.BitSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface for guild storage operations.
@@ -16,6 +18,21 @@ public interface GuildStorage {
      */
     void saveGuild(Guild guild);
 
+    /**
+     * Writes a guild snapshot to storage on the calling thread.
+     * Used by {@link WriteBehindGuildStorage} when flushing pending saves.
+     * Implementations throw if the write fails; the caller puts the changes back.
+     * @param snapshot The snapshot taken by {@link Guild#snapshotForSave()}.
+     */
+    void writeGuild(GuildSnapshot snapshot);
+
+    /**
+     * Writes anything the backend batches across guilds, e.g. shared claim files.
+     * Called by {@link WriteBehindGuildStorage} after each flush.
+     */
+    default void flushPendingWrites() {
+    }
+
     /**
      * Loads a guild from storage.
      * @param name The name of the guild to load.
@@ -29,25 +46,87 @@ public interface GuildStorage {
      */
     Set<Guild> loadAllGuilds();
 
+    /**
+     * Loads all guilds from storage without blocking the caller.
+     * Backends that load synchronously return an already completed future.
+     * @return A future completed with all loaded guilds, or failed if they cannot be read.
+     */
+    default CompletableFuture<Set<Guild>> loadAllGuildsAsync() {
+        try {
+            return CompletableFuture.completedFuture(loadAllGuilds());
+        } catch (RuntimeException e) {
+            // Callers wait with join(), which reports failures as a CompletionException
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Reads the id the next new guild gets.
+     * Kept above every id ever handed out, including those of deleted guilds.
+     * Blocks until read.
+     * @return The next guild id, or 1 if none is stored
+     * @throws RuntimeException if the stored value cannot be read
+     */
+    default int loadNextGuildId() {
+        return 1;
+    }
+
+    /**
+     * Stores the id the next new guild gets.
+     * A value below the stored one is ignored, so writes may arrive out of order.
+     * Blocks until written, so call it off the main thread.
+     * @param nextId The next guild id
+     * @throws RuntimeException if the value cannot be written
+     */
+    default void saveNextGuildId(int nextId) {
+    }
+
     /**
      * Deletes a guild from storage.
-     * @param name The name of the guild to delete.
+     * @param guild The guild to delete.
+     */
+    void deleteGuild(Guild guild);
+
+    /**
+     * Deletes a guild's data from storage on the calling thread.
+     * Writes of the deleted guild that arrive afterwards are ignored, while a different
+     * guild registered under its id, e.g. one restored from a backup, is written normally.
+     * Used by {@link WriteBehindGuildStorage}, which calls it after every earlier write of the guild.
+     * @param guild The deleted guild.
+     * @throws RuntimeException if the data cannot be deleted; the caller retries
      */
-    void deleteGuild(String name);
+    void writeGuildDeletion(Guild guild);
 
     /**
-     * Saves storage data for a guild.
-     * @param guildName The name of the guild.
+     * Writes the storage chest contents of a guild
+     * Blocks until written, so call it off the main thread, see {@link GuildVaultCache}
+     * @param guildId The id of the guild.
      * @param contents The storage contents.
+     * @throws RuntimeException if the contents cannot be written
+     */
+    void saveStorageData(int guildId, ItemStack[] contents);
+
+    /**
+     * Writes the changed slots of a guild's storage chest
+     * Backends that store slots separately write only the changed ones; others rewrite
+     * all contents. Blocks until written, so call it off the main thread, see {@link GuildVaultCache}
+     * @param guildId The id of the guild.
+     * @param contents The full storage contents.
+     * @param changedSlots The slots changed since the last write.
+     * @throws RuntimeException if the contents cannot be written
      */
-    void saveStorageData(String guildName, ItemStack[] contents);
+    default void saveStorageSlots(int guildId, ItemStack[] contents, BitSet changedSlots) {
+        saveStorageData(guildId, contents);
+    }
 
     /**
-     * Gets the storage data for a guild.
-     * @param guildName The name of the guild.
-     * @return The storage data.
+     * Reads the storage chest contents of a guild
+     * Blocks until read, so call it off the main thread, see {@link GuildVaultCache}
+     * @param guildId The id of the guild.
+     * @return The storage contents, or null if the guild has none stored
+     * @throws RuntimeException if the contents cannot be read
      */
-    ConfigurationSection getStorageData(String guildName);
+    ItemStack[] loadStorageData(int guildId);
 
     /**
      * Gets the guild manager.
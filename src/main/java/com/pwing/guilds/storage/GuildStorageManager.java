@@ -1,38 +1,49 @@
 package com.pwing.guilds.storage;
 
 import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.api.GuildDeleteEvent;
+import com.pwing.guilds.api.GuildMemberLeaveEvent;
 import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.guild.GuildManager;
 
 import org.bukkit.Bukkit;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.event.EventPriority;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.text.SimpleDateFormat;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /**
  * Manages guild storage operations and listeners.
+ * Every member looking at a guild's storage sees the same inventory, so changes show up
+ * for all viewers at once and no viewer can overwrite another's changes on close.
  */
 public class GuildStorageManager implements Listener {
     private final PwingGuilds plugin;
     private final GuildManager guildManager;
-    private final Map<UUID, Inventory> openStorages = new HashMap<>();
-    private final Map<String, ItemStack[]> guildStorages = new HashMap<>();
+    // Storages someone has open, by guild id, so a rename while open cannot misfile the contents
+    private final Map<Integer, SharedStorage> openStorages = new HashMap<>();
+    private final GuildVaultCache vaults;
 
     /**
      * Constructs a new GuildStorageManager.
@@ -41,16 +52,24 @@ public class GuildStorageManager implements Listener {
     public GuildStorageManager(PwingGuilds plugin) {
         this.plugin = plugin;
         this.guildManager = plugin.getGuildManager();
+        this.vaults = new GuildVaultCache(plugin, guildManager.getStorage(),
+                TimeUnit.SECONDS.toMillis(plugin.getConfig().getLong("storage.settings.save-delay", 5)),
+                TimeUnit.SECONDS.toMillis(plugin.getConfig().getLong("storage.settings.idle-unload", 600)));
         Bukkit.getPluginManager().registerEvents(this, plugin);
-        loadAllStorages();
-        
+
         // Add shutdown hook
         Bukkit.getPluginManager().registerEvent(PluginDisableEvent.class, this, EventPriority.HIGHEST,
-            (listener, event) -> closeAllStorages(), plugin);
+            (listener, event) -> {
+                if (((PluginDisableEvent) event).getPlugin() == plugin) {
+                    closeAllStorages();
+                }
+            }, plugin);
     }
 
     /**
      * Opens the storage for a guild.
+     * If the contents are not cached they load in the background and the storage
+     * opens once they are available.
      * @param player The player opening the storage.
      * @param guild The guild whose storage is being opened.
      */
@@ -60,16 +79,45 @@ public class GuildStorageManager implements Listener {
             return;
         }
 
-        int rows = guild.getPerks().getStorageRows();
-        Inventory inv = Bukkit.createInventory(null, rows * 9, "Guild Storage - " + guild.getName());
-        
-        ItemStack[] contents = guildStorages.get(guild.getName());
-        if (contents != null) {
-            inv.setContents(contents);
+        int guildId = guild.getId();
+        SharedStorage open = openStorages.get(guildId);
+        if (open != null) {
+            showStorage(player, open);
+            return;
         }
+        vaults.load(guildId).whenComplete((contents, error) -> runOnMainThread(() -> {
+            if (error != null) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load storage for guild id: " + guildId, error);
+                player.sendMessage("§cYour guild storage could not be loaded, please try again later.");
+                return;
+            }
+            if (!player.isOnline()) {
+                return;
+            }
+
+            // Another member may have opened it while the contents were loading
+            SharedStorage storage = openStorages.get(guildId);
+            if (storage == null) {
+                storage = new SharedStorage(guildId, guild.getPerks().getStorageRows() * 9,
+                        "Guild Storage - " + guild.getName(), contents);
+                openStorages.put(guildId, storage);
+                vaults.setOpen(guildId, true);
+            }
+            showStorage(player, storage);
+        }));
+    }
+
+    private void showStorage(Player player, SharedStorage storage) {
+        player.openInventory(storage.getInventory());
+        getActiveViewers(storage.guildId).add(player.getUniqueId());
+    }
 
-        player.openInventory(inv);
-        openStorages.put(player.getUniqueId(), inv);
+    private void runOnMainThread(Runnable task) {
+        if (Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
     }
 
     /**
@@ -82,12 +130,52 @@ public class GuildStorageManager implements Listener {
             return;
         }
 
-        Inventory openInv = openStorages.get(player.getUniqueId());
-        if (openInv != null && event.getInventory().equals(openInv)) {
-            // Allow interaction with the guild storage inventory
-            if (!hasStorageAccess(player, guildManager.getPlayerGuild(player.getUniqueId()).orElse(null))) {
+        SharedStorage storage = getOpenStorage(event.getView().getTopInventory());
+        if (storage != null) {
+            if (!hasStorageAccess(player, storage)) {
+                event.setCancelled(true);
+                player.sendMessage("§cYou do not have permission to access this storage.");
+                return;
+            }
+            // Shift clicks and double clicks can change storage slots from either inventory
+            queueSync(storage);
+        }
+    }
+
+    /**
+     * Handles inventory drag events.
+     * @param event The InventoryDragEvent.
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (!(event.getWhoClicked() instanceof Player player)) {
+            return;
+        }
+
+        SharedStorage storage = getOpenStorage(event.getView().getTopInventory());
+        if (storage != null) {
+            if (!hasStorageAccess(player, storage)) {
                 event.setCancelled(true);
                 player.sendMessage("§cYou do not have permission to access this storage.");
+                return;
+            }
+            queueSync(storage);
+        }
+    }
+
+    /**
+     * Closes the guild storage for a member who leaves or is removed from the guild.
+     * @param event The GuildMemberLeaveEvent.
+     */
+    @EventHandler
+    public void onMemberLeave(GuildMemberLeaveEvent event) {
+        SharedStorage storage = openStorages.get(event.getGuild().getId());
+        if (storage == null) {
+            return;
+        }
+        for (HumanEntity viewer : new ArrayList<>(storage.getInventory().getViewers())) {
+            if (viewer.getUniqueId().equals(event.getPlayer())) {
+                viewer.closeInventory();
             }
         }
     }
@@ -102,58 +190,103 @@ public class GuildStorageManager implements Listener {
             return;
         }
 
-        Inventory openInv = openStorages.remove(player.getUniqueId());
-        if (openInv != null) {
-            String guildName = event.getView().getTitle().substring("Guild Storage - ".length());
-            guildStorages.put(guildName, openInv.getContents());
-            saveStorage(guildName);
+        SharedStorage storage = getOpenStorage(event.getInventory());
+        if (storage == null) {
+            return;
+        }
+        syncStorage(storage);
+        Set<UUID> viewers = getActiveViewers(storage.guildId);
+        viewers.remove(player.getUniqueId());
+        if (viewers.isEmpty()) {
+            // Reopened with the current storage rows next time; the cache keeps the contents
+            openStorages.remove(storage.guildId);
+            activeViewers.remove(storage.guildId);
+            vaults.setOpen(storage.guildId, false);
         }
     }
 
-    private void loadAllStorages() {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            for (Guild guild : plugin.getGuildManager().getGuilds()) {
-                ConfigurationSection section = guildManager.getStorage().getStorageData(guild.getName());
-                if (section != null) {
-                    List<ItemStack> contentsList = (List<ItemStack>) section.get("contents");
-                    ItemStack[] contents = contentsList.toArray(new ItemStack[0]);
-                    guildStorages.put(guild.getName(), contents);
-                }
-            }
-        });
+    /**
+     * Drops the cached storage of a deleted guild, so a pending write cannot recreate it.
+     * @param event The GuildDeleteEvent.
+     */
+    @EventHandler
+    public void onGuildDelete(GuildDeleteEvent event) {
+        int guildId = event.getGuild().getId();
+        SharedStorage storage = openStorages.remove(guildId);
+        activeViewers.remove(guildId);
+        vaults.invalidate(guildId);
+        if (storage != null) {
+            new ArrayList<>(storage.getInventory().getViewers()).forEach(HumanEntity::closeInventory);
+        }
     }
 
-    private void saveStorageAsync(String guildName) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            ItemStack[] contents = guildStorages.get(guildName);
-            if (contents != null) {
-                guildManager.getStorage().saveStorageData(guildName, contents);
+    private SharedStorage getOpenStorage(Inventory inventory) {
+        if (inventory != null && inventory.getHolder() instanceof SharedStorage storage
+                && openStorages.get(storage.guildId) == storage) {
+            return storage;
+        }
+        return null;
+    }
+
+    private void queueSync(SharedStorage storage) {
+        if (!storage.syncQueued) {
+            storage.syncQueued = true;
+            // Clicks change the inventory after the event, so compare on the next tick
+            Bukkit.getScheduler().runTask(plugin, () -> syncStorage(storage));
+        }
+    }
+
+    /**
+     * Hands the slots that changed since the last sync to the vault cache
+     * Written by the vault thread shortly after, never on the main thread
+     * @param storage The open storage
+     */
+    private void syncStorage(SharedStorage storage) {
+        storage.syncQueued = false;
+        if (openStorages.get(storage.guildId) != storage) {
+            return;
+        }
+        Map<Integer, ItemStack> changes = new HashMap<>();
+        Inventory inventory = storage.getInventory();
+        for (int slot = 0; slot < storage.synced.length; slot++) {
+            ItemStack item = normalize(inventory.getItem(slot));
+            if (!Objects.equals(item, storage.synced[slot])) {
+                // getItem may return a live view of the slot, so keep a copy
+                storage.synced[slot] = item != null ? item.clone() : null;
+                changes.put(slot, storage.synced[slot]);
             }
-        });
+        }
+        vaults.update(storage.guildId, changes);
+    }
+
+    private static ItemStack normalize(ItemStack item) {
+        return item == null || item.getType().isAir() ? null : item;
     }
 
     /**
-     * Saves all guild storages.
+     * Saves all guild storages now, including storages players still have open.
      */
     public void saveAllStorages() {
-        guildStorages.forEach((guildName, contents) -> 
-            guildManager.getStorage().saveStorageData(guildName, contents));
+        new ArrayList<>(openStorages.values()).forEach(this::syncStorage);
+        vaults.flush();
     }
 
-    private final Map<String, Set<UUID>> activeViewers = new HashMap<>();
+    private final Map<Integer, Set<UUID>> activeViewers = new HashMap<>();
 
     /**
      * Gets the active viewers of a guild's storage.
-     * @param guildName The name of the guild.
+     * @param guildId The id of the guild.
      * @return A set of UUIDs of active viewers.
      */
-    public Set<UUID> getActiveViewers(String guildName) {
-        return activeViewers.computeIfAbsent(guildName, k -> new HashSet<>());
+    public Set<UUID> getActiveViewers(int guildId) {
+        return activeViewers.computeIfAbsent(guildId, k -> new HashSet<>());
     }
 
-    private boolean hasStorageAccess(Player player, Guild guild) {
-        return guild.getMembers().contains(player.getUniqueId()) && 
-               player.hasPermission("guilds.storage.access");
+    private boolean hasStorageAccess(Player player, SharedStorage storage) {
+        // Checked against the storage's guild, as all viewers share one inventory
+        Guild guild = guildManager.getPlayerGuild(player.getUniqueId()).orElse(null);
+        return guild != null && guild.getId() == storage.guildId
+                && player.hasPermission("guilds.storage.access");
     }
 
     private boolean validateStorageSize(Guild guild, ItemStack[] contents) {
@@ -168,43 +301,69 @@ public class GuildStorageManager implements Listener {
     }
 
     private void closeAllStorages() {
-        if (plugin.getGuildManager() != null && plugin.getGuildManager().getStorage() != null) {
-            plugin.getLogger().info("Starting final guild data save...");
-            for (Guild guild : plugin.getGuildManager().getGuilds()) {
-                plugin.getGuildManager().getStorage().saveGuild(guild);
-            }
-            plugin.getLogger().info("Guild data save completed!");
-        }
+        saveAllStorages();
+        vaults.shutdown();
     }
 
-    private void saveStorage(String guildName) {
-        ItemStack[] contents = guildStorages.get(guildName);
-        if (contents != null) {
-            plugin.getGuildManager().getStorage().saveStorageData(guildName, contents);
-        }
+    /**
+     * Gets the storage contents of a guild if they are loaded.
+     * Never touches storage; use {@link #loadGuildStorage(int)} to load them.
+     * @param guildId The id of the guild.
+     * @return The storage contents, or null if not loaded or empty.
+     */
+    public ItemStack[] getGuildStorage(int guildId) {
+        return vaults.getIfLoaded(guildId);
     }
 
     /**
-     * Gets the storage contents of a guild.
-     * @param guildName The name of the guild.
-     * @return The storage contents.
+     * Gets the storage contents of a guild, loading them in the background if needed.
+     * @param guildId The id of the guild.
+     * @return Future of the storage contents, null if the storage is empty.
      */
-    public ItemStack[] getGuildStorage(String guildName) {
-        return guildStorages.get(guildName);
+    public CompletableFuture<ItemStack[]> loadGuildStorage(int guildId) {
+        return vaults.load(guildId);
     }
 
     /**
-     * Saves an inventory to storage.
+     * Saves an inventory to storage if it is an open guild storage.
      * @param inventory The inventory to save.
      */
     public void saveInventory(Inventory inventory) {
-        if (inventory == null || !inventory.getViewers().get(0).getOpenInventory().getTitle().contains("Guild Storage")) {
-            return;
+        SharedStorage storage = getOpenStorage(inventory);
+        if (storage != null) {
+            syncStorage(storage);
+        }
+    }
+
+    /**
+     * The inventory all viewers of a guild's storage share, with the contents last
+     * handed to the vault cache so changed slots can be found.
+     */
+    private static final class SharedStorage implements InventoryHolder {
+        private final int guildId;
+        private final Inventory inventory;
+        private final ItemStack[] synced;
+        private boolean syncQueued;
+
+        private SharedStorage(int guildId, int size, String title, ItemStack[] contents) {
+            this.guildId = guildId;
+            this.inventory = Bukkit.createInventory(this, size, title);
+            this.synced = new ItemStack[size];
+            if (contents != null) {
+                // Slots beyond the current size stay in the cache untouched
+                for (int slot = 0; slot < Math.min(size, contents.length); slot++) {
+                    ItemStack item = normalize(contents[slot]);
+                    if (item != null) {
+                        inventory.setItem(slot, item.clone());
+                        synced[slot] = item.clone();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
         }
-        
-        String title = inventory.getViewers().get(0).getOpenInventory().getTitle();
-        String guildName = title.substring(title.indexOf(":") + 2);
-        
-        plugin.getGuildManager().getStorage().saveStorageData(guildName, inventory.getContents());
     }
 }
\ No newline at end of file
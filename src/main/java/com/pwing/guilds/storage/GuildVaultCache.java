@@ -0,0 +1,237 @@
+package com.pwing.guilds.storage;
+
+import com.pwing.guilds.PwingGuilds;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+/**
+ * Caches guild storage chest contents and keeps all reads and writes of them off
+ * the main thread.
+ * Contents load on first use and are dropped again after being idle for a while,
+ * unless a guild member has them open. Changes are tracked per slot and written by a
+ * single background thread a short delay after the first change, so a busy chest is
+ * written once per delay and only the slots that changed are sent to storage. The
+ * same thread does all loads and saves, so they reach storage in order.
+ */
+public class GuildVaultCache {
+    private final PwingGuilds plugin;
+    private final GuildStorage storage;
+    private final long saveDelayMillis;
+    private final long idleMillis;
+    private final ScheduledExecutorService executor;
+    private final Map<Integer, Vault> vaults = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<ItemStack[]>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a vault cache
+     * @param plugin The plugin instance
+     * @param storage The storage the contents are kept in
+     * @param saveDelayMillis How long to wait after a change before writing it
+     * @param idleMillis How long unused contents stay cached
+     */
+    public GuildVaultCache(PwingGuilds plugin, GuildStorage storage, long saveDelayMillis, long idleMillis) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.saveDelayMillis = Math.max(0L, saveDelayMillis);
+        this.idleMillis = Math.max(1000L, idleMillis);
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "PwingGuilds-Vault");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepInterval = Math.max(1000L, this.idleMillis / 4);
+        executor.scheduleWithFixedDelay(this::evictIdle, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the contents of a guild's storage chest, loading them in the background
+     * if they are not cached
+     * The future completes on the vault thread, or at once if the contents are cached
+     * @param guildId The guild id
+     * @return Future of the contents, which callers must not modify; null contents mean an empty chest
+     */
+    public CompletableFuture<ItemStack[]> load(int guildId) {
+        Vault vault = vaults.get(guildId);
+        if (vault != null) {
+            vault.lastAccess = System.currentTimeMillis();
+            return CompletableFuture.completedFuture(vault.contents);
+        }
+        CompletableFuture<ItemStack[]> future = loading.computeIfAbsent(guildId,
+                id -> CompletableFuture.supplyAsync(() -> loadVault(id), executor));
+        future.whenComplete((contents, error) -> loading.remove(guildId, future));
+        return future;
+    }
+
+    private ItemStack[] loadVault(int guildId) {
+        Vault vault = vaults.get(guildId);
+        if (vault == null) {
+            vault = new Vault(storage.loadStorageData(guildId));
+            Vault raced = vaults.putIfAbsent(guildId, vault);
+            if (raced != null) {
+                vault = raced;
+            }
+        }
+        return vault.contents;
+    }
+
+    /**
+     * Gets the cached contents of a guild's storage chest without loading them
+     * @param guildId The guild id
+     * @return The contents, or null if they are not cached or the chest is empty
+     */
+    public ItemStack[] getIfLoaded(int guildId) {
+        Vault vault = vaults.get(guildId);
+        return vault != null ? vault.contents : null;
+    }
+
+    /**
+     * Changes slots of a guild's storage chest and schedules a write of those slots
+     * Call on the main thread; the items are copied before this returns. Does nothing
+     * if the contents are not cached, e.g. because the guild was deleted meanwhile.
+     * @param guildId The guild id
+     * @param changes The new item of each changed slot, null for emptied slots
+     */
+    public void update(int guildId, Map<Integer, ItemStack> changes) {
+        Vault vault = vaults.get(guildId);
+        if (vault == null || changes.isEmpty()) {
+            return;
+        }
+        boolean schedule;
+        synchronized (vault) {
+            ItemStack[] current = vault.contents;
+            int size = current != null ? current.length : 0;
+            for (int slot : changes.keySet()) {
+                size = Math.max(size, slot + 1);
+            }
+            // Copy on write, so contents handed out by load() never change under a reader
+            ItemStack[] copy = current != null ? Arrays.copyOf(current, size) : new ItemStack[size];
+            changes.forEach((slot, item) -> {
+                copy[slot] = item != null ? item.clone() : null;
+                vault.dirtySlots.set(slot);
+            });
+            vault.contents = copy;
+            vault.lastAccess = System.currentTimeMillis();
+            schedule = !vault.dirty;
+            vault.dirty = true;
+        }
+        if (schedule) {
+            scheduleSave(guildId, vault);
+        }
+    }
+
+    /**
+     * Marks whether a guild's storage chest is open, which keeps its contents cached
+     * Call {@link #load(int)} first; does nothing if the contents are not cached
+     * @param guildId The guild id
+     * @param open Whether the chest is open
+     */
+    public void setOpen(int guildId, boolean open) {
+        Vault vault = vaults.get(guildId);
+        if (vault != null) {
+            vault.open = open;
+            vault.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private void scheduleSave(int guildId, Vault vault) {
+        if (executor.isShutdown()) {
+            plugin.getLogger().warning("Storage of guild id " + guildId + " changed after shutdown, not saved");
+            return;
+        }
+        executor.schedule(() -> save(guildId, vault), saveDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void save(int guildId, Vault vault) {
+        ItemStack[] contents;
+        BitSet slots;
+        synchronized (vault) {
+            // A deleted guild's vault is no longer in the map and must not be written back
+            if (!vault.dirty || vaults.get(guildId) != vault) {
+                return;
+            }
+            vault.dirty = false;
+            contents = vault.contents;
+            slots = (BitSet) vault.dirtySlots.clone();
+            vault.dirtySlots.clear();
+        }
+        try {
+            storage.saveStorageSlots(guildId, contents != null ? contents : new ItemStack[0], slots);
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save storage for guild id: " + guildId + ", retrying", e);
+            boolean schedule;
+            synchronized (vault) {
+                vault.dirtySlots.or(slots);
+                schedule = !vault.dirty;
+                vault.dirty = true;
+            }
+            if (schedule && !executor.isShutdown()) {
+                scheduleSave(guildId, vault);
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        vaults.forEach((guildId, vault) -> {
+            synchronized (vault) {
+                if (!vault.dirty && !vault.open && vault.lastAccess < cutoff) {
+                    vaults.remove(guildId, vault);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops a guild's contents without writing pending changes, e.g. after the guild was deleted
+     * @param guildId The guild id
+     */
+    public void invalidate(int guildId) {
+        vaults.remove(guildId);
+    }
+
+    /**
+     * Writes every pending change now instead of after the save delay
+     * Blocks until written
+     */
+    public void flush() {
+        try {
+            executor.submit(() -> vaults.forEach(this::save)).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save guild storages", e);
+        }
+    }
+
+    /**
+     * Writes every pending change and stops the vault thread
+     * Blocks until written, so the plugin can be disabled safely afterwards
+     */
+    public void shutdown() {
+        flush();
+        executor.shutdownNow();
+    }
+
+    private static final class Vault {
+        private volatile ItemStack[] contents;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile boolean open;
+        private boolean dirty;
+        private final BitSet dirtySlots = new BitSet();
+
+        private Vault(ItemStack[] contents) {
+            this.contents = contents;
+        }
+    }
+}
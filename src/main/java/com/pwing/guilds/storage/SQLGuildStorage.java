@@ -3,25 +3,25 @@ package com.pwing.guilds.storage;
 import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.guild.ChunkLocation;
+import com.pwing.guilds.guild.GuildChangeSet;
 import com.pwing.guilds.guild.GuildManager;
 import com.pwing.guilds.guild.GuildHome;
+import com.pwing.guilds.guild.GuildSnapshot;
+import com.pwing.guilds.util.ItemStackCodec;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.io.BukkitObjectInputStream;
-import org.bukkit.util.io.BukkitObjectOutputStream;
-import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -35,8 +35,9 @@ public class SQLGuildStorage implements GuildStorage {
     private final HikariDataSource dataSource;
     private final Map<String, Guild> guildCache = new ConcurrentHashMap<>();
     private final Map<UUID, Guild> playerGuildCache = new ConcurrentHashMap<>();
-    private final Queue<Guild> saveQueue = new ConcurrentLinkedQueue<>();
-    private static final long SAVE_INTERVAL = 100L;
+    // Deleted guilds by id; their snapshots still queued anywhere are never written
+    private final Map<Integer, Guild> deletedGuilds = new ConcurrentHashMap<>();
+    private static final String NEXT_GUILD_ID_KEY = "next_guild_id";
     private final GuildManager guildManager;
 
     /**
@@ -49,32 +50,23 @@ public class SQLGuildStorage implements GuildStorage {
         this.guildManager = plugin.getGuildManager();
         this.dataSource = dataSource;
         initTables();
-        startAsyncSaveProcessor();
-    }
-
-    /**
-     * Serializes Bukkit ItemStacks to byte array for storage
-     * @param items Array of items to serialize
-     * @return Serialized byte array
-     * @throws RuntimeException if serialization fails
-     */
-    private byte[] serializeItems(ItemStack[] items) {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-             BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream)) {
-            dataOutput.writeObject(items);
-            return outputStream.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to serialize items", e);
-        }
     }
 
     /**
      * Deserializes byte array back to Bukkit ItemStacks
+     * Reads both the {@link ItemStackCodec} format and the Java serialization used before it
      * @param data Byte array to deserialize
      * @return Array of ItemStacks
      * @throws RuntimeException if deserialization fails
      */
     private ItemStack[] deserializeItems(byte[] data) {
+        if (ItemStackCodec.isEncoded(data)) {
+            try {
+                return ItemStackCodec.decode(data);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to deserialize items", e);
+            }
+        }
         try (ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
              BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream)) {
             return (ItemStack[]) dataInput.readObject();
@@ -92,7 +84,8 @@ public class SQLGuildStorage implements GuildStorage {
              Statement stmt = conn.createStatement()) {
 
             stmt.execute("CREATE TABLE IF NOT EXISTS guilds (" +
-                    "name VARCHAR(32) PRIMARY KEY," +
+                    "id INT PRIMARY KEY," +
+                    "name VARCHAR(32) NOT NULL UNIQUE," +
                     "owner VARCHAR(36)," +
                     "level INT," +
                     "exp BIGINT," +
@@ -103,21 +96,21 @@ public class SQLGuildStorage implements GuildStorage {
                     ")");
 
             stmt.execute("CREATE TABLE IF NOT EXISTS guild_members (" +
-                    "guild_name VARCHAR(32)," +
+                    "guild_id INT," +
                     "uuid VARCHAR(36)," +
-                    "PRIMARY KEY (guild_name, uuid)" +
+                    "PRIMARY KEY (guild_id, uuid)" +
                     ")");
 
             stmt.execute("CREATE TABLE IF NOT EXISTS guild_chunks (" +
-                    "guild_name VARCHAR(32)," +
+                    "guild_id INT," +
                     "world VARCHAR(64)," +
                     "x INT," +
                     "z INT," +
-                    "PRIMARY KEY (guild_name, world, x, z)" +
+                    "PRIMARY KEY (guild_id, world, x, z)" +
                     ")");
 
             stmt.execute("CREATE TABLE IF NOT EXISTS guild_homes (" +
-                    "guild_name VARCHAR(32)," +
+                    "guild_id INT," +
                     "home_name VARCHAR(32)," +
                     "world VARCHAR(64)," +
                     "x DOUBLE," +
@@ -125,137 +118,141 @@ public class SQLGuildStorage implements GuildStorage {
                     "z DOUBLE," +
                     "yaw FLOAT," +
                     "pitch FLOAT," +
-                    "PRIMARY KEY (guild_name, home_name)" +
+                    "PRIMARY KEY (guild_id, home_name)" +
                     ")");
 
             stmt.execute("CREATE TABLE IF NOT EXISTS guild_storage (" +
-                    "guild_name VARCHAR(32) PRIMARY KEY," +
+                    "guild_id INT PRIMARY KEY," +
                     "contents MEDIUMBLOB" +
                     ")");
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+            // One row per filled slot, so a change only rewrites the slots it touched;
+            // guild_storage only holds chests not yet converted to it
+            stmt.execute("CREATE TABLE IF NOT EXISTS guild_storage_slots (" +
+                    "guild_id INT," +
+                    "slot INT," +
+                    "item MEDIUMBLOB," +
+                    "PRIMARY KEY (guild_id, slot)" +
+                    ")");
 
-    /**
-     * Processes any remaining guild saves in the queue
-     * Should be called before plugin shutdown
-     */
-    public void processRemainingQueue() {
-        try (Connection conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-            Guild guild;
-            while ((guild = saveQueue.poll()) != null) {
-                saveGuildData(guild, conn);
-            }
-            conn.commit();
+            // Holds the next guild id, which must stay above the ids of deleted guilds
+            stmt.execute("CREATE TABLE IF NOT EXISTS guild_meta (" +
+                    "meta_key VARCHAR(32) PRIMARY KEY," +
+                    "meta_value BIGINT NOT NULL" +
+                    ")");
+
+            migrateToGuildIds(conn);
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to process remaining guild saves!");
             e.printStackTrace();
         }
     }
 
     /**
-     * Starts async task to periodically save queued guild data
-     * Runs every SAVE_INTERVAL ticks
+     * Moves tables created by older versions from guild names to guild ids
+     * Does nothing once the tables are keyed by id
+     * @param conn Active database connection
+     * @throws SQLException if database error occurs
      */
-    private void startAsyncSaveProcessor() {
-        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            try (Connection conn = dataSource.getConnection()) {
-                conn.setAutoCommit(false);
-                Guild guild;
-                while ((guild = saveQueue.poll()) != null) {
-                    saveGuildData(guild, conn);
-                }
-                conn.commit();
-            } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to process guild save queue!");
-                e.printStackTrace();
+    private void migrateToGuildIds(Connection conn) throws SQLException {
+        if (GuildIdMigration.migrateGuildsTable(conn)) {
+            plugin.getLogger().info("Assigned ids to existing guilds");
+        }
+        String[][] childTables = {
+                {"guild_members", "guild_id, uuid"},
+                {"guild_chunks", "guild_id, world, x, z"},
+                {"guild_homes", "guild_id, home_name"},
+                {"guild_storage", "guild_id"}
+        };
+        for (String[] table : childTables) {
+            int orphans = GuildIdMigration.migrateChildTable(conn, table[0], table[1]);
+            if (orphans >= 0) {
+                plugin.getLogger().info("Migrated " + table[0] + " to guild ids, dropped " + orphans + " rows of deleted guilds");
             }
-        }, SAVE_INTERVAL, SAVE_INTERVAL);
+        }
     }
 
     /**
-     * Saves guild data to database as a transaction
-     * @param guild Guild to save
-     * @param conn Active database connection
+     * Saves the changes carried by a snapshot to the database as a transaction
+     * Only the rows affected by those changes are written, unless the guild needs a full save
+     * The caller puts the changes back if this throws
+     * @param snapshot Snapshot taken by {@link Guild#snapshotForSave()}
      * @throws SQLException if database error occurs
      */
-    private void saveGuildData(Guild guild, Connection conn) throws SQLException {
+    private void saveGuildData(GuildSnapshot snapshot) throws SQLException {
+        GuildChangeSet changes = snapshot.getChanges();
+        if (changes.isEmpty() || deletedGuilds.get(snapshot.getId()) == snapshot.getGuild()) {
+            return;
+        }
+
+        // Rows are keyed by id, so a rename is just the name column of the guild row
         executeTransaction(connection -> {
-            // Check if the guild name has changed
-            String oldName = guildCache.entrySet().stream()
-                    .filter(entry -> entry.getValue().equals(guild))
-                    .map(Map.Entry::getKey)
-                    .findFirst()
-                    .orElse(guild.getName());
-
-            if (!oldName.equals(guild.getName())) {
-                // Delete old guild data
-                String[] tables = {"guild_homes", "guild_members", "guild_chunks", "guild_storage", "guilds"};
-                for (String table : tables) {
-                    try (PreparedStatement ps = connection.prepareStatement("DELETE FROM " + table + " WHERE guild_name = ?")) {
-                        ps.setString(1, oldName);
-                        ps.executeUpdate();
-                    }
-                }
+            if (changes.isFullSave()) {
+                writeFullGuild(snapshot, connection);
+            } else {
+                writeGuildChanges(snapshot, changes, connection);
             }
+        });
 
-            // Save main guild data
-            try (PreparedStatement ps = connection.prepareStatement(
-                    "REPLACE INTO guilds (name, owner, level, exp, bonus_claims, pvp_enabled, built_structures, tag) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
-                ps.setString(1, guild.getName());
-                ps.setString(2, guild.getOwner().toString());
-                ps.setInt(3, guild.getLevel());
-                ps.setLong(4, guild.getExp());
-                ps.setInt(5, guild.getBonusClaims());
-                ps.setBoolean(6, guild.isPvPEnabled());
-                ps.setString(7, String.join(",", guild.getBuiltStructures()));
-                ps.setString(8, guild.getTag()); // Save the tag
-                ps.executeUpdate();
+        String oldName = changes.getRenamedFrom();
+        if (oldName != null) {
+            Guild cached = guildCache.remove(oldName);
+            if (cached != null && cached.getId() == snapshot.getId()) {
+                guildCache.put(snapshot.getName(), cached);
             }
+        }
+    }
 
-            // Clear existing data
-            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM guild_members WHERE guild_name = ?")) {
-                ps.setString(1, guild.getName());
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM guild_chunks WHERE guild_name = ?")) {
-                ps.setString(1, guild.getName());
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM guild_homes WHERE guild_name = ?")) {
-                ps.setString(1, guild.getName());
+    private void writeFullGuild(GuildSnapshot guild, Connection connection) throws SQLException {
+        writeGuildRow(guild, connection);
+
+        // Clear existing data
+        for (String table : new String[]{"guild_members", "guild_chunks", "guild_homes"}) {
+            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM " + table + " WHERE guild_id = ?")) {
+                ps.setInt(1, guild.getId());
                 ps.executeUpdate();
             }
+        }
 
-            // Save members
+        insertMembers(guild.getId(), guild.getMembers(), connection);
+
+        // Insert chunks sorted so they land in primary key order
+        List<ChunkLocation> sortedChunks = guild.getClaimedChunks().stream()
+                .sorted((c1, c2) -> {
+                    int worldCompare = c1.getWorldName().compareTo(c2.getWorldName());
+                    if (worldCompare != 0) return worldCompare;
+                    int xCompare = Integer.compare(c1.getX(), c2.getX());
+                    if (xCompare != 0) return xCompare;
+                    return Integer.compare(c1.getZ(), c2.getZ());
+                })
+                .collect(Collectors.toList());
+        insertChunks(guild.getId(), sortedChunks, connection);
+
+        writeHomes(guild, guild.getHomes().keySet(), connection);
+    }
+
+    private void writeGuildChanges(GuildSnapshot guild, GuildChangeSet changes, Connection connection) throws SQLException {
+        if (changes.isFieldsChanged() || changes.getRenamedFrom() != null) {
+            writeGuildRow(guild, connection);
+        }
+
+        if (!changes.getRemovedMembers().isEmpty()) {
             try (PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO guild_members (guild_name, uuid) VALUES (?, ?)")) {
-                for (UUID member : guild.getMembers()) {
-                    ps.setString(1, guild.getName());
+                    "DELETE FROM guild_members WHERE guild_id = ? AND uuid = ?")) {
+                for (UUID member : changes.getRemovedMembers()) {
+                    ps.setInt(1, guild.getId());
                     ps.setString(2, member.toString());
                     ps.addBatch();
                 }
                 ps.executeBatch();
             }
+        }
+        insertMembers(guild.getId(), changes.getAddedMembers(), connection);
 
-            // Save chunks with sorting
+        if (!changes.getUnclaimedChunks().isEmpty()) {
             try (PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO guild_chunks (guild_name, world, x, z) VALUES (?, ?, ?, ?)")) {
-                List<ChunkLocation> sortedChunks = guild.getClaimedChunks().stream()
-                    .sorted((c1, c2) -> {
-                        int worldCompare = c1.getWorldName().compareTo(c2.getWorldName());
-                        if (worldCompare != 0) return worldCompare;
-                        int xCompare = Integer.compare(c1.getX(), c2.getX());
-                        if (xCompare != 0) return xCompare;
-                        return Integer.compare(c1.getZ(), c2.getZ());
-                    })
-                    .collect(Collectors.toList());
-                    
-                for (ChunkLocation chunk : sortedChunks) {
-                    ps.setString(1, guild.getName());
+                    "DELETE FROM guild_chunks WHERE guild_id = ? AND world = ? AND x = ? AND z = ?")) {
+                for (ChunkLocation chunk : changes.getUnclaimedChunks()) {
+                    ps.setInt(1, guild.getId());
                     ps.setString(2, chunk.getWorldName());
                     ps.setInt(3, chunk.getX());
                     ps.setInt(4, chunk.getZ());
@@ -263,34 +260,115 @@ public class SQLGuildStorage implements GuildStorage {
                 }
                 ps.executeBatch();
             }
+        }
+        insertChunks(guild.getId(), changes.getClaimedChunks(), connection);
 
-            // Save homes
+        if (!changes.getDeletedHomes().isEmpty()) {
             try (PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO guild_homes (guild_name, home_name, world, x, y, z, yaw, pitch) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
-                for (Map.Entry<String, GuildHome> entry : guild.getHomes().entrySet()) {
-                    Location loc = entry.getValue().getLocation();
-                    ps.setString(1, guild.getName());
-                    ps.setString(2, entry.getKey());
-                    ps.setString(3, loc.getWorld().getName());
-                    ps.setDouble(4, loc.getX());
-                    ps.setDouble(5, loc.getY());
-                    ps.setDouble(6, loc.getZ());
-                    ps.setFloat(7, loc.getYaw());
-                    ps.setFloat(8, loc.getPitch());
+                    "DELETE FROM guild_homes WHERE guild_id = ? AND home_name = ?")) {
+                for (String home : changes.getDeletedHomes()) {
+                    ps.setInt(1, guild.getId());
+                    ps.setString(2, home);
                     ps.addBatch();
                 }
                 ps.executeBatch();
             }
+        }
+        writeHomes(guild, changes.getSetHomes(), connection);
+    }
+
+    private void writeGuildRow(GuildSnapshot guild, Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "REPLACE INTO guilds (id, name, owner, level, exp, bonus_claims, pvp_enabled, built_structures, tag) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setInt(1, guild.getId());
+            ps.setString(2, guild.getName());
+            ps.setString(3, guild.getOwner().toString());
+            ps.setInt(4, guild.getLevel());
+            ps.setLong(5, guild.getExp());
+            ps.setInt(6, guild.getBonusClaims());
+            ps.setBoolean(7, guild.isPvPEnabled());
+            ps.setString(8, String.join(",", guild.getBuiltStructures()));
+            ps.setString(9, guild.getTag());
+            ps.executeUpdate();
+        }
+    }
+
+    private void insertMembers(int guildId, Collection<UUID> members, Connection connection) throws SQLException {
+        if (members.isEmpty()) return;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT IGNORE INTO guild_members (guild_id, uuid) VALUES (?, ?)")) {
+            for (UUID member : members) {
+                ps.setInt(1, guildId);
+                ps.setString(2, member.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
 
-            conn.commit();
-        });
+    private void insertChunks(int guildId, Collection<ChunkLocation> chunks, Connection connection) throws SQLException {
+        if (chunks.isEmpty()) return;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT IGNORE INTO guild_chunks (guild_id, world, x, z) VALUES (?, ?, ?, ?)")) {
+            for (ChunkLocation chunk : chunks) {
+                ps.setInt(1, guildId);
+                ps.setString(2, chunk.getWorldName());
+                ps.setInt(3, chunk.getX());
+                ps.setInt(4, chunk.getZ());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void writeHomes(GuildSnapshot guild, Collection<String> homeNames, Connection connection) throws SQLException {
+        if (homeNames.isEmpty()) return;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "REPLACE INTO guild_homes (guild_id, home_name, world, x, y, z, yaw, pitch) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (String homeName : homeNames) {
+                GuildHome home = guild.getHomes().get(homeName);
+                if (home == null) continue;
+                Location loc = home.getLocation();
+                ps.setInt(1, guild.getId());
+                ps.setString(2, homeName);
+                ps.setString(3, loc.getWorld().getName());
+                ps.setDouble(4, loc.getX());
+                ps.setDouble(5, loc.getY());
+                ps.setDouble(6, loc.getZ());
+                ps.setFloat(7, loc.getYaw());
+                ps.setFloat(8, loc.getPitch());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
     }
 
+    /**
+     * Writes a guild on the calling thread
+     * Saves are normally scheduled by {@link WriteBehindGuildStorage}, which calls {@link #writeGuild(GuildSnapshot)}
+     * @param guild The guild to save
+     */
     @Override
     public void saveGuild(Guild guild) {
         guildCache.put(guild.getName(), guild);
         guild.getMembers().forEach(member -> playerGuildCache.put(member, guild));
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> saveQueue.offer(guild));
+        GuildSnapshot snapshot = guild.snapshotForSave();
+        try {
+            saveGuildData(snapshot);
+        } catch (SQLException e) {
+            snapshot.restoreChanges();
+            plugin.getLogger().severe("Failed to save guild: " + snapshot.getName());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void writeGuild(GuildSnapshot snapshot) {
+        try {
+            saveGuildData(snapshot);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save guild " + snapshot.getName(), e);
+        }
     }
 
     @Override
@@ -306,8 +384,9 @@ public class SQLGuildStorage implements GuildStorage {
             ResultSet rs = ps.executeQuery();
 
             if (rs.next()) {
-                Guild guild = new Guild(plugin, name, UUID.fromString(rs.getString("owner")));
+                Guild guild = readGuild(rs);
                 loadGuildData(guild, conn);
+                guild.markPersisted();
                 guildCache.put(name, guild);
                 return guild;
             }
@@ -319,168 +398,369 @@ public class SQLGuildStorage implements GuildStorage {
 
     private void loadGuildData(Guild guild, Connection conn) throws SQLException {
         // Load members
-        try (PreparedStatement ps = conn.prepareStatement("SELECT uuid FROM guild_members WHERE guild_name = ?")) {
-            ps.setString(1, guild.getName());
+        try (PreparedStatement ps = conn.prepareStatement("SELECT uuid FROM guild_members WHERE guild_id = ?")) {
+            ps.setInt(1, guild.getId());
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
                 UUID memberId = UUID.fromString(rs.getString("uuid"));
-                guild.addMember(memberId);
+                guild.restoreMember(memberId);
                 plugin.getGuildManager().getPlayerGuilds().put(memberId, guild);
             }
         }
 
         // Load chunks
-        try (PreparedStatement ps = conn.prepareStatement("SELECT world, x, z FROM guild_chunks WHERE guild_name = ?")) {
-            ps.setString(1, guild.getName());
+        try (PreparedStatement ps = conn.prepareStatement("SELECT world, x, z FROM guild_chunks WHERE guild_id = ?")) {
+            ps.setInt(1, guild.getId());
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                ChunkLocation chunk = new ChunkLocation(
-                        rs.getString("world"),
-                        rs.getInt("x"),
-                        rs.getInt("z")
-                );
-                guild.claimChunk(chunk);
+                guild.restoreClaim(readChunk(rs));
             }
         }
 
         // Load homes
-        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM guild_homes WHERE guild_name = ?")) {
-            ps.setString(1, guild.getName());
+        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM guild_homes WHERE guild_id = ?")) {
+            ps.setInt(1, guild.getId());
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                Location loc = new Location(
-                        Bukkit.getWorld(rs.getString("world")),
-                        rs.getDouble("x"),
-                        rs.getDouble("y"),
-                        rs.getDouble("z"),
-                        rs.getFloat("yaw"),
-                        rs.getFloat("pitch")
-                );
-                guild.setHome(rs.getString("home_name"), loc);
+                guild.restoreHome(rs.getString("home_name"), readHomeLocation(rs));
             }
         }
+    }
 
-        // Load PvP setting
-        try (PreparedStatement ps = conn.prepareStatement("SELECT pvp_enabled FROM guilds WHERE name = ?")) {
-            ps.setString(1, guild.getName());
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                guild.setPvPEnabled(rs.getBoolean("pvp_enabled"));
+    @Override
+    public Set<Guild> loadAllGuilds() {
+        return loadAllGuildsAsync().join();
+    }
+
+    /**
+     * Bulk loads every guild with one streaming query per table.
+     * Runs off the Bukkit scheduler, whose async tasks would not start while
+     * the main thread is blocked waiting on the result during startup.
+     * @return Future completed with all loaded guilds
+     */
+    @Override
+    public CompletableFuture<Set<Guild>> loadAllGuildsAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkLoadGuilds();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
             }
-        }
+        });
+    }
 
-        // Load built structures
-        try (PreparedStatement ps = conn.prepareStatement("SELECT built_structures FROM guilds WHERE name = ?")) {
-            ps.setString(1, guild.getName());
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                String builtStructures = rs.getString("built_structures");
-                if (builtStructures != null && !builtStructures.isEmpty()) {
-                    guild.getBuiltStructures().addAll(Arrays.asList(builtStructures.split(",")));
+    private Set<Guild> bulkLoadGuilds() throws SQLException {
+        Map<Integer, Guild> loaded = new HashMap<>();
+        int orphans = 0;
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement stmt = createStreamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM guilds")) {
+                while (rs.next()) {
+                    Guild guild = readGuild(rs);
+                    loaded.put(guild.getId(), guild);
+                }
+            }
+
+            try (Statement stmt = createStreamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT guild_id, uuid FROM guild_members")) {
+                while (rs.next()) {
+                    Guild guild = loaded.get(rs.getInt("guild_id"));
+                    if (guild == null) {
+                        orphans++;
+                        continue;
+                    }
+                    guild.restoreMember(UUID.fromString(rs.getString("uuid")));
+                }
+            }
+
+            try (Statement stmt = createStreamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT guild_id, world, x, z FROM guild_chunks")) {
+                while (rs.next()) {
+                    Guild guild = loaded.get(rs.getInt("guild_id"));
+                    if (guild == null) {
+                        orphans++;
+                        continue;
+                    }
+                    guild.restoreClaim(readChunk(rs));
+                }
+            }
+
+            try (Statement stmt = createStreamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM guild_homes")) {
+                while (rs.next()) {
+                    Guild guild = loaded.get(rs.getInt("guild_id"));
+                    if (guild == null) {
+                        orphans++;
+                        continue;
+                    }
+                    guild.restoreHome(rs.getString("home_name"), readHomeLocation(rs));
                 }
             }
         }
 
-        // Load tag
-        try (PreparedStatement ps = conn.prepareStatement("SELECT tag FROM guilds WHERE name = ?")) {
-            ps.setString(1, guild.getName());
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                guild.setTag(rs.getString("tag"));
+        if (orphans > 0) {
+            plugin.getLogger().warning("Skipped " + orphans + " rows referencing guilds that no longer exist");
+        }
+
+        for (Guild guild : loaded.values()) {
+            guild.markPersisted();
+            guildCache.put(guild.getName(), guild);
+            guild.getMembers().forEach(member -> playerGuildCache.put(member, guild));
+        }
+        return new HashSet<>(loaded.values());
+    }
+
+    /**
+     * Creates a forward-only statement that streams rows instead of buffering the whole table
+     * @param conn Active database connection
+     * @return The statement
+     * @throws SQLException if database error occurs
+     */
+    private Statement createStreamingStatement(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // MySQL Connector/J only streams row by row with this fetch size
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        return stmt;
+    }
+
+    private Guild readGuild(ResultSet rs) throws SQLException {
+        Guild guild = new Guild(plugin, rs.getInt("id"), rs.getString("name"), UUID.fromString(rs.getString("owner")));
+        guild.setLevel(Math.max(1, rs.getInt("level")));
+        guild.setExp(rs.getLong("exp"));
+        guild.addBonusClaims(rs.getInt("bonus_claims"));
+        guild.restorePvPEnabled(rs.getBoolean("pvp_enabled"));
+        String builtStructures = rs.getString("built_structures");
+        if (builtStructures != null && !builtStructures.isEmpty()) {
+            for (String structure : builtStructures.split(",")) {
+                guild.addBuiltStructure(structure);
             }
         }
+        guild.setTag(rs.getString("tag"));
+        return guild;
+    }
+
+    private ChunkLocation readChunk(ResultSet rs) throws SQLException {
+        return new ChunkLocation(rs.getString("world"), rs.getInt("x"), rs.getInt("z"));
+    }
+
+    private Location readHomeLocation(ResultSet rs) throws SQLException {
+        return new Location(
+                Bukkit.getWorld(rs.getString("world")),
+                rs.getDouble("x"),
+                rs.getDouble("y"),
+                rs.getDouble("z"),
+                rs.getFloat("yaw"),
+                rs.getFloat("pitch")
+        );
     }
 
     @Override
-    public Set<Guild> loadAllGuilds() {
-        Set<Guild> guilds = new HashSet<>();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (Connection conn = dataSource.getConnection();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT name FROM guilds")) {
+    public int loadNextGuildId() {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT meta_value FROM guild_meta WHERE meta_key = ?")) {
+            ps.setString(1, NEXT_GUILD_ID_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? (int) Math.max(1L, rs.getLong("meta_value")) : 1;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load the next guild id", e);
+        }
+    }
 
-                while (rs.next()) {
-                    Guild guild = loadGuild(rs.getString("name"));
-                    if (guild != null) {
-                        guilds.add(guild);
-                        guildCache.put(guild.getName(), guild);
-                        guild.getMembers().forEach(member -> playerGuildCache.put(member, guild));
-                        plugin.getLogger().info("Loaded guild: " + guild.getName() + " with " + guild.getMembers().size() + " members and " + guild.getClaimedChunks().size() + " claims.");
+    @Override
+    public void saveNextGuildId(int nextId) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "INSERT INTO guild_meta (meta_key, meta_value) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE meta_value = GREATEST(meta_value, VALUES(meta_value))")) {
+            ps.setString(1, NEXT_GUILD_ID_KEY);
+            ps.setLong(2, nextId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save the next guild id", e);
+        }
+    }
+
+    /**
+     * Deletes a guild on the calling thread
+     * Deletions are normally scheduled by {@link WriteBehindGuildStorage}, which calls {@link #writeGuildDeletion(Guild)}
+     * @param guild The guild to delete
+     */
+    @Override
+    public void deleteGuild(Guild guild) {
+        try {
+            writeGuildDeletion(guild);
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe("Failed to delete guild: " + guild.getName());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void writeGuildDeletion(Guild guild) {
+        int guildId = guild.getId();
+        deletedGuilds.put(guildId, guild);
+        guildCache.remove(guild.getName(), guild);
+        guild.getMembers().forEach(member -> playerGuildCache.remove(member, guild));
+        try {
+            executeTransaction(conn -> {
+                String[] tables = {"guild_homes", "guild_members", "guild_chunks", "guild_storage", "guild_storage_slots"};
+                for (String table : tables) {
+                    try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE guild_id = ?")) {
+                        ps.setInt(1, guildId);
+                        ps.executeUpdate();
                     }
                 }
-            } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to load guilds from SQL storage: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
-        return guilds;
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM guilds WHERE id = ?")) {
+                    ps.setInt(1, guildId);
+                    ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete guild " + guild.getName(), e);
+        }
     }
 
     @Override
-    public void deleteGuild(String name) {
-        guildCache.remove(name);
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (Connection conn = dataSource.getConnection()) {
-                conn.setAutoCommit(false);
-                try {
-                    String[] tables = {"guild_homes", "guild_members", "guild_chunks", "guild_storage", "guilds"};
-                    for (String table : tables) {
-                        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE guild_name = ?")) {
-                            ps.setString(1, name);
-                            ps.executeUpdate();
-                        }
-                    }
-                    conn.commit();
-                } catch (SQLException e) {
-                    conn.rollback();
-                    throw e;
-                } finally {
-                    conn.setAutoCommit(true);
+    public void saveStorageData(int guildId, ItemStack[] contents) {
+        BitSet allSlots = new BitSet();
+        allSlots.set(0, contents.length);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM guild_storage_slots WHERE guild_id = ?")) {
+                    ps.setInt(1, guildId);
+                    ps.executeUpdate();
                 }
+                writeStorageSlots(conn, guildId, contents, allSlots);
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM guild_storage WHERE guild_id = ?")) {
+                    ps.setInt(1, guildId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
             } catch (SQLException e) {
-                e.printStackTrace();
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save storage for guild id: " + guildId, e);
+        }
     }
 
     @Override
-    public void saveStorageData(String guildName, ItemStack[] contents) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(
-                     "REPLACE INTO guild_storage (guild_name, contents) VALUES (?, ?)")) {
-                ps.setString(1, guildName);
-                ps.setBytes(2, serializeItems(contents));
-                ps.executeUpdate();
+    public void saveStorageSlots(int guildId, ItemStack[] contents, BitSet changedSlots) {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                writeStorageSlots(conn, guildId, contents, changedSlots);
+                conn.commit();
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to save storage for guild: " + guildName);
-                e.printStackTrace();
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save storage for guild id: " + guildId, e);
+        }
+    }
+
+    /**
+     * Writes the given slots as one batch of replaces and one of deletes for emptied slots
+     * @param conn Active database connection, in a transaction
+     * @param guildId The guild id
+     * @param contents The storage contents
+     * @param slots The slots to write
+     * @throws SQLException if database error occurs
+     */
+    private void writeStorageSlots(Connection conn, int guildId, ItemStack[] contents, BitSet slots) throws SQLException {
+        try (PreparedStatement replace = conn.prepareStatement(
+                     "REPLACE INTO guild_storage_slots (guild_id, slot, item) VALUES (?, ?, ?)");
+             PreparedStatement delete = conn.prepareStatement(
+                     "DELETE FROM guild_storage_slots WHERE guild_id = ? AND slot = ?")) {
+            boolean replaced = false;
+            boolean deleted = false;
+            for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+                ItemStack item = slot < contents.length ? contents[slot] : null;
+                if (item == null || item.getType().isAir() || item.getAmount() <= 0) {
+                    delete.setInt(1, guildId);
+                    delete.setInt(2, slot);
+                    delete.addBatch();
+                    deleted = true;
+                } else {
+                    replace.setInt(1, guildId);
+                    replace.setInt(2, slot);
+                    try {
+                        replace.setBytes(3, ItemStackCodec.encodeItem(item));
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to serialize item in slot " + slot, e);
+                    }
+                    replace.addBatch();
+                    replaced = true;
+                }
+            }
+            if (replaced) {
+                replace.executeBatch();
+            }
+            if (deleted) {
+                delete.executeBatch();
+            }
+        }
     }
 
     @Override
-    public ConfigurationSection getStorageData(String guildName) {
-        final YamlConfiguration config = new YamlConfiguration();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(
-                     "SELECT contents FROM guild_storage WHERE guild_name = ?")) {
-                ps.setString(1, guildName);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    byte[] data = rs.getBytes("contents");
-                    if (data != null) {
-                        ItemStack[] items = deserializeItems(data);
-                        config.set("contents", Arrays.asList(items));
+    public ItemStack[] loadStorageData(int guildId) {
+        try (Connection conn = dataSource.getConnection()) {
+            Map<Integer, ItemStack> slots = new HashMap<>();
+            int size = 0;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT slot, item FROM guild_storage_slots WHERE guild_id = ?")) {
+                ps.setInt(1, guildId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int slot = rs.getInt("slot");
+                        if (slot < 0) {
+                            continue;
+                        }
+                        try {
+                            slots.put(slot, ItemStackCodec.decodeItem(rs.getBytes("item")));
+                        } catch (IOException e) {
+                            throw new RuntimeException("Failed to deserialize item in slot " + slot, e);
+                        }
+                        size = Math.max(size, slot + 1);
                     }
                 }
-            } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to load storage data for guild: " + guildName);
-                e.printStackTrace();
             }
-        });
-        return config;
+            if (!slots.isEmpty()) {
+                ItemStack[] items = new ItemStack[size];
+                slots.forEach((slot, item) -> items[slot] = item);
+                return items;
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT contents FROM guild_storage WHERE guild_id = ?")) {
+                ps.setInt(1, guildId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        byte[] data = rs.getBytes("contents");
+                        if (data != null) {
+                            // Convert each chest to slot rows the first time it is read
+                            ItemStack[] items = deserializeItems(data);
+                            saveStorageData(guildId, items);
+                            plugin.getLogger().info("Converted storage of guild id " + guildId + " to per-slot rows");
+                            return items;
+                        }
+                    }
+                }
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load storage for guild id: " + guildId, e);
+        }
     }
 
     @Override
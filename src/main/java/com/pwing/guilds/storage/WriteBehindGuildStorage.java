@@ -0,0 +1,356 @@
+package com.pwing.guilds.storage;
+
+import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.guild.Guild;
+import com.pwing.guilds.guild.GuildManager;
+import com.pwing.guilds.guild.GuildSnapshot;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Write-behind layer in front of any {@link GuildStorage}.
+ * Repeated saves of the same guild are coalesced into one pending entry. When the
+ * flush interval elapses or the number of pending guilds reaches the configured
+ * threshold, the main thread takes a snapshot of each pending guild and one async
+ * writer passes them to {@link GuildStorage#writeGuild(GuildSnapshot)} in order.
+ * Deletions go through the same queue, so they are applied after earlier writes.
+ */
+public class WriteBehindGuildStorage implements GuildStorage {
+    private static final long DEFAULT_FLUSH_INTERVAL = 100L;
+    private static final int DEFAULT_MAX_PENDING = 256;
+
+    private final PwingGuilds plugin;
+    private final GuildStorage delegate;
+    // Keyed by identity; guild objects survive renames, so one entry per guild
+    private final Set<Guild> pending = ConcurrentHashMap.newKeySet();
+    // Snapshots waiting for the async writer, oldest first
+    private final Queue<PendingWrite> outbox = new ConcurrentLinkedQueue<>();
+    // Guilds deleted or replaced by a restore; a save through a stale reference is ignored
+    private final Set<Guild> retired = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final long flushInterval;
+    private final int maxPending;
+    private BukkitTask flushTask;
+    private volatile boolean shutdown;
+
+    private volatile long lastFlushMillis;
+    private volatile int lastFlushSize;
+    private final AtomicLong totalFlushed = new AtomicLong();
+    private final AtomicLong totalRequested = new AtomicLong();
+
+    /**
+     * Creates a write-behind layer and starts its flush timer
+     * @param plugin The plugin instance
+     * @param delegate The storage backend guilds are written to
+     */
+    public WriteBehindGuildStorage(PwingGuilds plugin, GuildStorage delegate) {
+        this.plugin = plugin;
+        this.delegate = delegate;
+        this.flushInterval = Math.max(1L, plugin.getConfig().getLong("storage.write-behind.flush-interval", DEFAULT_FLUSH_INTERVAL));
+        this.maxPending = Math.max(1, plugin.getConfig().getInt("storage.write-behind.max-pending", DEFAULT_MAX_PENDING));
+        // Snapshots must be taken on the main thread; the writes themselves run async
+        this.flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, flushInterval, flushInterval);
+    }
+
+    /**
+     * Queues a guild to be written on the next flush
+     * Saving the same guild again before the flush does no extra work
+     * @param guild The guild to save
+     */
+    @Override
+    public void saveGuild(Guild guild) {
+        if (retired.contains(guild)) {
+            return;
+        }
+        if (shutdown) {
+            pending.remove(guild);
+            outbox.add(new PendingWrite(guild, guild.snapshotForSave()));
+            writeOutbox();
+            return;
+        }
+        totalRequested.incrementAndGet();
+        pending.add(guild);
+        // No tasks can be scheduled while disabling; shutdown() drains the rest
+        if (pending.size() >= maxPending && plugin.isEnabled() && flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    @Override
+    public void writeGuild(GuildSnapshot snapshot) {
+        delegate.writeGuild(snapshot);
+    }
+
+    /**
+     * Snapshots every pending guild and hands them to the async writer
+     * Runs on the main thread from the flush timer
+     */
+    public void flush() {
+        capturePending();
+        if (writeScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::writeOutbox);
+        }
+    }
+
+    private void capturePending() {
+        for (Guild guild : pending) {
+            if (pending.remove(guild)) {
+                outbox.add(new PendingWrite(guild, guild.snapshotForSave()));
+            }
+        }
+    }
+
+    /**
+     * Writes queued snapshots to the backend in the order they were taken
+     * Only one writer runs at a time
+     */
+    private void writeOutbox() {
+        synchronized (flushLock) {
+            writeScheduled.set(false);
+            if (outbox.isEmpty()) {
+                // Still retry batched writes a previous flush could not complete
+                flushDelegate();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int written = 0;
+            // After a failed write, later snapshots of that guild are held back too,
+            // so their deltas are not applied ahead of the failed ones
+            Map<Guild, Deque<GuildSnapshot>> failed = new LinkedHashMap<>();
+            List<PendingWrite> failedDeletions = new ArrayList<>();
+            PendingWrite write;
+            while ((write = outbox.poll()) != null) {
+                if (write.isDeletion()) {
+                    // Changes of a deleted guild that failed to save are not retried
+                    failed.remove(write.guild);
+                    try {
+                        delegate.writeGuildDeletion(write.guild);
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.SEVERE, "Failed to delete guild " + write.guild.getName() + ", will retry on the next flush", e);
+                        failedDeletions.add(write);
+                    }
+                    continue;
+                }
+                Deque<GuildSnapshot> failedWrites = failed.get(write.guild);
+                if (failedWrites != null) {
+                    failedWrites.add(write.snapshot);
+                    continue;
+                }
+                try {
+                    delegate.writeGuild(write.snapshot);
+                    written++;
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to save guild " + write.snapshot.getName() + ", will retry on the next flush", e);
+                    failed.computeIfAbsent(write.guild, guild -> new ArrayDeque<>()).add(write.snapshot);
+                }
+            }
+
+            flushDelegate();
+
+            // Newest first, so each restore lands ahead of the changes after it
+            failed.forEach((guild, snapshots) -> {
+                snapshots.descendingIterator().forEachRemaining(GuildSnapshot::restoreChanges);
+                if (!retired.contains(guild)) {
+                    pending.add(guild);
+                }
+            });
+            outbox.addAll(failedDeletions);
+
+            totalFlushed.addAndGet(written);
+            lastFlushSize = written;
+            lastFlushMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    private void flushDelegate() {
+        try {
+            delegate.flushPendingWrites();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to write batched guild data, will retry on the next flush", e);
+        }
+    }
+
+    /**
+     * Stops the flush timer and writes everything still pending on the calling thread
+     * Must run on the main thread, before the backend's connections are closed
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        // Waits for an in-flight async write, then drains what is left
+        capturePending();
+        writeOutbox();
+        if (!pending.isEmpty()) {
+            plugin.getLogger().severe(pending.size() + " guilds could not be saved during shutdown");
+        }
+    }
+
+    /**
+     * Gets the number of guilds waiting to be written
+     * @return Pending guild count
+     */
+    public int getQueueDepth() {
+        return pending.size() + outbox.size();
+    }
+
+    /**
+     * Gets how long the most recent flush took
+     * @return Flush duration in milliseconds
+     */
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    /**
+     * Gets how many guilds the most recent flush wrote
+     * @return Guilds written by the last flush
+     */
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    /**
+     * Gets how many guild writes reached the backend since startup
+     * @return Total guilds written
+     */
+    public long getTotalFlushed() {
+        return totalFlushed.get();
+    }
+
+    /**
+     * Gets how many saves were requested since startup, before coalescing
+     * @return Total save requests
+     */
+    public long getTotalRequested() {
+        return totalRequested.get();
+    }
+
+    /**
+     * Gets the storage backend behind this layer
+     * @return The wrapped storage
+     */
+    public GuildStorage getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Guild loadGuild(String name) {
+        return delegate.loadGuild(name);
+    }
+
+    @Override
+    public Set<Guild> loadAllGuilds() {
+        return delegate.loadAllGuilds();
+    }
+
+    @Override
+    public CompletableFuture<Set<Guild>> loadAllGuildsAsync() {
+        return delegate.loadAllGuildsAsync();
+    }
+
+    @Override
+    public int loadNextGuildId() {
+        return delegate.loadNextGuildId();
+    }
+
+    @Override
+    public void saveNextGuildId(int nextId) {
+        delegate.saveNextGuildId(nextId);
+    }
+
+    /**
+     * Queues the deletion of a guild behind the writes already taken
+     * Saves not yet written are dropped, and a snapshot the writer is busy with is written
+     * first, so nothing written afterwards can bring the guild back
+     * @param guild The guild to delete
+     */
+    @Override
+    public void deleteGuild(Guild guild) {
+        discard(guild);
+        outbox.add(new PendingWrite(guild, null));
+        if (shutdown) {
+            writeOutbox();
+        } else if (writeScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::writeOutbox);
+        }
+    }
+
+    /**
+     * Drops the saves of a guild that were not yet written and ignores any later ones
+     * Used when a restore replaces the guild with another under the same id; a snapshot
+     * the writer is busy with is written before the replacement's first save
+     * @param guild The replaced guild
+     */
+    public void discard(Guild guild) {
+        retired.add(guild);
+        pending.remove(guild);
+        outbox.removeIf(write -> write.guild == guild);
+    }
+
+    @Override
+    public void writeGuildDeletion(Guild guild) {
+        delegate.writeGuildDeletion(guild);
+    }
+
+    @Override
+    public void saveStorageData(int guildId, ItemStack[] contents) {
+        delegate.saveStorageData(guildId, contents);
+    }
+
+    @Override
+    public void saveStorageSlots(int guildId, ItemStack[] contents, BitSet changedSlots) {
+        delegate.saveStorageSlots(guildId, contents, changedSlots);
+    }
+
+    @Override
+    public ItemStack[] loadStorageData(int guildId) {
+        return delegate.loadStorageData(guildId);
+    }
+
+    @Override
+    public GuildManager getGuildManager() {
+        return delegate.getGuildManager();
+    }
+
+    private static final class PendingWrite {
+        private final Guild guild;
+        // Null for a deletion
+        private final GuildSnapshot snapshot;
+
+        private PendingWrite(Guild guild, GuildSnapshot snapshot) {
+            this.guild = guild;
+            this.snapshot = snapshot;
+        }
+
+        private boolean isDeletion() {
+            return snapshot == null;
+        }
+    }
+}
@@ -3,21 +3,34 @@ package com.pwing.guilds.storage;
 import com.pwing.guilds.PwingGuilds;
 import com.pwing.guilds.guild.Guild;
 import com.pwing.guilds.guild.ChunkLocation;
+import com.pwing.guilds.guild.GuildChangeSet;
 import com.pwing.guilds.guild.GuildHome;
 import com.pwing.guilds.guild.GuildManager;
+import com.pwing.guilds.guild.GuildSnapshot;
+import com.pwing.guilds.util.AtomicFiles;
+import com.pwing.guilds.util.ItemStackCodec;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.logging.Level;
 
@@ -28,9 +41,18 @@ import java.util.logging.Level;
 public class YamlGuildStorage implements GuildStorage {
     private final PwingGuilds plugin;
     private final File guildsFolder;
-    private final Map<String, Guild> guildCache = new HashMap<>();
-    private static final long AUTO_SAVE_INTERVAL = 6000L;
+    private final Map<String, Guild> guildCache = new ConcurrentHashMap<>();
     private final GuildManager guildManager;
+    private final ClaimRegionStore claimRegions;
+    private final boolean fsync;
+    private static final String VAULT_EXTENSION = ".vault";
+    // One writer per guild id, so writes of the same guild never overlap
+    private final Map<Integer, GuildWriter> writers = new ConcurrentHashMap<>();
+    // Deleted guilds by id; their snapshots still queued anywhere are never written
+    private final Map<Integer, Guild> deletedGuilds = new ConcurrentHashMap<>();
+    // Outside the guilds folder, so it is never read as a guild file
+    private final File metaFile;
+    private int storedNextGuildId;
 
     /**
      * Constructs a new YamlGuildStorage.
@@ -41,11 +63,13 @@ public class YamlGuildStorage implements GuildStorage {
         this.plugin = plugin;
         this.guildManager = plugin.getGuildManager();
         this.guildsFolder = new File(plugin.getDataFolder(), "guilds");
+        this.metaFile = new File(plugin.getDataFolder(), "guild-meta.yml");
         if (!guildsFolder.exists()) {
             guildsFolder.mkdirs();
         }
+        this.fsync = plugin.getConfig().getBoolean("storage.yaml.fsync", true);
+        this.claimRegions = new ClaimRegionStore(new File(guildsFolder, "claims"), fsync);
         initBackupSettings();
-        startAutoSave();
         startBackupCleaner();
     }
 
@@ -53,96 +77,88 @@ public class YamlGuildStorage implements GuildStorage {
         return guildManager;
     }
 
-    private void startAutoSave() {
-        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            plugin.getLogger().info("Starting auto-save of all guilds...");
-            for (Guild guild : new ArrayList<>(guildCache.values())) {
-                try {
-                    saveGuild(guild);
-                } catch (Exception e) {
-                    plugin.getLogger().severe("Failed to auto-save guild: " + guild.getName());
-                    e.printStackTrace();
-                }
-            }
-            plugin.getLogger().info("Auto-save complete!");
-        }, AUTO_SAVE_INTERVAL, AUTO_SAVE_INTERVAL);
+    /**
+     * Writes a guild on the calling thread
+     * Saves are normally scheduled by {@link WriteBehindGuildStorage}, which calls {@link #writeGuild(GuildSnapshot)}
+     * @param guild The guild to save
+     */
+    @Override
+    public void saveGuild(Guild guild) {
+        saveSnapshot(guild.snapshotForSave());
     }
 
-    public void saveGuild(Guild guild) {
-        // Check if the plugin is still enabled before scheduling async tasks
-        if (!plugin.isEnabled()) {
-            // Use synchronous saving if plugin is being disabled
-            saveGuildSync(guild);
-            return;
+    @Override
+    public void writeGuild(GuildSnapshot snapshot) {
+        // Claim region files are written once per batch in flushPendingWrites
+        try {
+            writeGuildFile(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save guild " + snapshot.getName(), e);
         }
-        
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            File oldGuildFile = new File(guildsFolder, guild.getName() + ".yml");
-            File guildFile = new File(guildsFolder, guild.getName() + ".yml");
-            if (!oldGuildFile.equals(guildFile) && oldGuildFile.exists()) {
-                oldGuildFile.delete();
-            }
-            YamlConfiguration config = new YamlConfiguration();
-
-            // Core guild data
-            config.set("name", guild.getName());
-            config.set("owner", guild.getOwner().toString());
-            config.set("level", guild.getLevel());
-            config.set("exp", guild.getExp());
-            config.set("bonus-claims", guild.getBonusClaims());
-            config.set("tag", guild.getTag()); // Save the tag
-
-            // Members
-            config.set("members", guild.getMembers().stream()
-                    .map(UUID::toString)
-                    .collect(Collectors.toList()));
-
-            // Claims
-            List<Map<String, Object>> claimMaps = guild.getClaimedChunks().stream()
-                    .map(claim -> Map.<String, Object>of(
-                            "world", claim.getWorld().getName(),
-                            "x", claim.getX(),
-                            "z", claim.getZ()
-                    ))
-                    .collect(Collectors.toList());
-            config.set("claims", claimMaps);
+    }
 
-            // Homes
-            config.set("homes", guild.getHomes().entrySet().stream()
-                    .collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            e -> serializeLocation(e.getValue().getLocation())
-                    )));
+    @Override
+    public void flushPendingWrites() {
+        flushClaimRegions();
+    }
 
-            // New sections
-            config.set("pvp-enabled", guild.isPvPEnabled());
-            config.set("builtStructures", new ArrayList<>(guild.getBuiltStructures()));
+    private void saveSnapshot(GuildSnapshot snapshot) {
+        try {
+            writeGuildFile(snapshot);
+        } catch (Exception e) {
+            snapshot.restoreChanges();
+            plugin.getLogger().severe("Failed to save guild: " + snapshot.getName());
+            e.printStackTrace();
+        }
+        flushClaimRegions();
+    }
 
-            try {
-                config.save(guildFile);
-                guildCache.put(guild.getName(), guild);
-                createBackup(guild.getName());
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to save guild: " + guild.getName());
-                e.printStackTrace();
-            }
-        });
+    private void flushClaimRegions() {
+        try {
+            claimRegions.flush();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to write claim region files, will retry on the next save", e);
+        }
     }
 
     /**
-     * Save guild data synchronously - used during plugin shutdown
-     * @param guild The guild to save
+     * Applies a snapshot's claim changes and writes its .yml
+     * Writes of one guild are serialized; snapshots normally arrive in order from the write-behind queue
      */
-    public void saveGuildSync(Guild guild) {
-        try {
-            File oldGuildFile = new File(guildsFolder, guild.getName() + ".yml");
-            File guildFile = new File(guildsFolder, guild.getName() + ".yml");
-            if (!oldGuildFile.equals(guildFile) && oldGuildFile.exists()) {
-                oldGuildFile.delete();
+    private void writeGuildFile(GuildSnapshot guild) throws IOException {
+        GuildWriter writer = writers.computeIfAbsent(guild.getId(), id -> new GuildWriter());
+        writer.newest.accumulateAndGet(guild.getSequence(), Math::max);
+        synchronized (writer) {
+            GuildChangeSet changes = guild.getChanges();
+            if (changes.isEmpty() || deletedGuilds.get(guild.getId()) == guild.getGuild()) {
+                return;
+            }
+            // Claims are stored as deltas, so every snapshot's changes are applied
+            if (changes.isFullSave()) {
+                claimRegions.setClaims(guild.getId(), guild.getClaimedChunks());
+            } else {
+                claimRegions.applyChanges(guild.getId(), changes.getClaimedChunks(), changes.getUnclaimedChunks());
+            }
+            String oldName = changes.getRenamedFrom();
+            if (oldName != null) {
+                Guild cached = guildCache.remove(oldName);
+                if (cached != null && cached.getId() == guild.getId()) {
+                    guildCache.put(guild.getName(), cached);
+                }
             }
+
+            // The .yml is written whole, so it is skipped when a newer snapshot
+            // of the guild is already waiting and would only overwrite it
+            if (guild.getSequence() < writer.newest.get()) {
+                return;
+            }
+
+            // Files are named by id, so renaming a guild does not move them
+            File guildFile = new File(guildsFolder, guild.getId() + ".yml");
             YamlConfiguration config = new YamlConfiguration();
 
             // Core guild data
+            config.set("id", guild.getId());
             config.set("name", guild.getName());
             config.set("owner", guild.getOwner().toString());
             config.set("level", guild.getLevel());
@@ -155,16 +171,6 @@ public class YamlGuildStorage implements GuildStorage {
                     .map(UUID::toString)
                     .collect(Collectors.toList()));
 
-            // Claims
-            List<Map<String, Object>> claimMaps = guild.getClaimedChunks().stream()
-                    .map(claim -> Map.<String, Object>of(
-                            "world", claim.getWorld().getName(),
-                            "x", claim.getX(),
-                            "z", claim.getZ()
-                    ))
-                    .collect(Collectors.toList());
-            config.set("claims", claimMaps);
-
             // Homes
             config.set("homes", guild.getHomes().entrySet().stream()
                     .collect(Collectors.toMap(
@@ -176,15 +182,18 @@ public class YamlGuildStorage implements GuildStorage {
             config.set("pvp-enabled", guild.isPvPEnabled());
             config.set("builtStructures", new ArrayList<>(guild.getBuiltStructures()));
 
-            config.save(guildFile);
-            guildCache.put(guild.getName(), guild);
-            createBackup(guild.getName());
-        } catch (Exception e) {
-            plugin.getLogger().severe("Failed to save guild: " + guild.getName());
-            e.printStackTrace();
+            saveAtomically(config, guildFile);
         }
     }
 
+    /**
+     * Writes a configuration through a temporary file, so a crash or a concurrent
+     * reader never sees a half-written file
+     */
+    private void saveAtomically(YamlConfiguration config, File file) throws IOException {
+        AtomicFiles.write(file.toPath(), config.saveToString().getBytes(StandardCharsets.UTF_8), fsync);
+    }
+
     private Map<String, Object> configSectionToMap(ConfigurationSection section) {
         Map<String, Object> map = new HashMap<>();
         for (String key : section.getKeys(false)) {
@@ -198,23 +207,74 @@ public class YamlGuildStorage implements GuildStorage {
         return map;
     }
 
-    private Guild loadGuild(File file) {
+    /**
+     * Reads and parses one guild file
+     * Touches nothing but the file, so it is safe to run on loader threads
+     */
+    private ParsedGuildFile parseGuildFile(File file) {
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        Map<String, Object> data = configSectionToMap(config);
+        // Claims live in the region files; files written before them are converted by loadAllGuilds
+        data.remove("claims");
+        List<ChunkLocation> yamlClaims = config.contains("claims") ? readYamlClaims(config) : null;
+        return new ParsedGuildFile(file, config, data, yamlClaims);
+    }
+
+    private List<ParsedGuildFile> parseGuildFiles(File[] files) {
+        List<ParsedGuildFile> parsed = new ArrayList<>(files.length);
+        if (files.length == 0) {
+            return parsed;
+        }
+        long start = System.currentTimeMillis();
+        int threads = Math.min(files.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "PwingGuilds-GuildLoader");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
-            String name = config.getString("name");
-            String ownerString = config.getString("owner");
+            List<Future<ParsedGuildFile>> futures = new ArrayList<>(files.length);
+            for (File file : files) {
+                futures.add(pool.submit(() -> parseGuildFile(file)));
+            }
+            // Collect in file order so loading stays deterministic
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    parsed.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to read guild file: " + files[i].getName(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading guild files", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        plugin.getLogger().info("Parsed " + parsed.size() + " guild files on " + threads + " threads in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return parsed;
+    }
+
+    /**
+     * Builds a guild from a parsed file
+     * Guild construction resolves worlds and allocates ids, so this runs on the loading thread only
+     */
+    private Guild loadGuild(ParsedGuildFile parsed) {
+        try {
+            String name = parsed.config.getString("name");
+            String ownerString = parsed.config.getString("owner");
             
             if (name == null || ownerString == null) {
-                plugin.getLogger().warning("Invalid guild file (missing name or owner): " + file.getName());
+                plugin.getLogger().warning("Invalid guild file (missing name or owner): " + parsed.file.getName());
                 return null;
             }
 
-            Map<String, Object> data = configSectionToMap(config);
-            Guild guild = Guild.deserialize(plugin, data);
-            guild.setTag(config.getString("tag", "")); // Load the tag
+            Guild guild = Guild.deserialize(plugin, parsed.data);
+            guild.setTag(parsed.config.getString("tag", "")); // Load the tag
             return guild;
         } catch (Exception e) {
-            plugin.getLogger().severe("Error loading guild from file: " + file.getName());
+            plugin.getLogger().severe("Error loading guild from file: " + parsed.file.getName());
             e.printStackTrace();
             return null;
         }
@@ -274,85 +334,50 @@ public class YamlGuildStorage implements GuildStorage {
             return guildCache.get(name);
         }
 
-        File guildFile = new File(guildsFolder, name + ".yml");
-        if (!guildFile.exists()) return null;
-
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(guildFile);
-        UUID owner = UUID.fromString(config.getString("owner"));
-        Guild guild = new Guild(plugin, name, owner);
-
-        guild.setLevel(config.getInt("level"));
-        guild.setExp(config.getLong("exp"));
-        guild.addBonusClaims(config.getInt("bonus-claims", 0));
-
-        // Load members
-        List<String> membersList = config.getStringList("members");
-        for (String memberUUID : membersList) {
-            UUID memberId = UUID.fromString(memberUUID);
-            guild.addMember(memberId);
-            plugin.getGuildManager().getPlayerGuilds().put(memberId, guild);
-        }
-
-        // Load claims
-        List<Map<String, Object>> claimMaps = (List<Map<String, Object>>) config.getList("claims");
-        for (Map<String, Object> claimMap : claimMaps) {
-            String worldName = (String) claimMap.get("world");
-            if (Bukkit.getWorld(worldName) == null) {
-                plugin.getLogger().warning("Invalid world name in claim: " + claimMap);
-                continue;
-            }
-            ChunkLocation claim = new ChunkLocation(worldName, (Integer) claimMap.get("x"), (Integer) claimMap.get("z"));
-            guild.claimChunk(claim);
-        }
-
-        // Load homes if they exist
-        ConfigurationSection homesSection = config.getConfigurationSection("homes");
-        if (homesSection != null) {
-            for (String homeName : homesSection.getKeys(false)) {
-                String locationString = homesSection.getString(homeName);
-                if (locationString != null) {
-                    String[] parts = locationString.split(",");
-                    if (parts.length >= 6) {
-                        String worldName = parts[0];
-                        if (Bukkit.getWorld(worldName) == null) {
-                            plugin.getLogger().warning("Invalid world name in home: " + homeName);
-                            continue;
-                        }
-                        Location loc = new Location(
-                                Bukkit.getWorld(worldName),
-                                Double.parseDouble(parts[1]),
-                                Double.parseDouble(parts[2]),
-                                Double.parseDouble(parts[3]),
-                                Float.parseFloat(parts[4]),
-                                Float.parseFloat(parts[5])
-                        );
-                        guild.setHome(homeName, loc);
+        // Files are named by id, so look for the one holding this name
+        for (File file : listGuildFiles()) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+            if (name.equals(config.getString("name"))) {
+                ParsedGuildFile parsed = parseGuildFile(file);
+                Guild guild = loadGuild(parsed);
+                if (guild != null) {
+                    claimRegions.getClaims(guild.getId()).forEach(guild::restoreClaim);
+                    if (parsed.yamlClaims != null) {
+                        parsed.yamlClaims.forEach(guild::restoreClaim);
                     }
+                    guild.markPersisted();
+                    guildCache.put(name, guild);
                 }
+                return guild;
             }
         }
+        return null;
+    }
 
-        // Check for and add missing sections
-        updateGuildConfig(config, guild);
-
-        guildCache.put(name, guild);
-        return guild;
+    private File[] listGuildFiles() {
+        // Get only .yml files and filter out backup/storage files
+        File[] files = guildsFolder.listFiles((dir, name) ->
+            name.endsWith(".yml") &&
+            !name.contains("backup") &&
+            !name.contains("-storage")
+        );
+        return files != null ? files : new File[0];
     }
 
-    private void createBackup(String guildName) {
-        File guildFile = new File(guildsFolder, guildName + ".yml");
+    private void createBackup(int guildId) {
+        File guildFile = new File(guildsFolder, guildId + ".yml");
         File backupFolder = new File(guildsFolder, "backups");
         if (!backupFolder.exists()) {
             backupFolder.mkdirs();
         }
 
         String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
-        File backupFile = new File(backupFolder, guildName + "-" + timestamp + ".yml");
+        File backupFile = new File(backupFolder, guildId + "-" + timestamp + ".yml");
 
         try {
             Files.copy(guildFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            plugin.getLogger().warning("Failed to create backup for guild: " + guildName);
+            plugin.getLogger().warning("Failed to create backup for guild id: " + guildId);
         }
     }
 
@@ -367,41 +392,244 @@ public class YamlGuildStorage implements GuildStorage {
             return guilds; // Return empty set if no guilds exist yet
         }
 
-        // Get only .yml files and filter out backup/storage files
-        File[] files = guildsFolder.listFiles((dir, name) -> 
-            name.endsWith(".yml") && 
-            !name.contains("backup") && 
-            !name.contains("-storage")
-        );
+        long start = System.currentTimeMillis();
+        Map<Integer, List<ChunkLocation>> storedClaims;
+        try {
+            storedClaims = claimRegions.load();
+        } catch (IOException e) {
+            // Starting without claims would erase them on the next save
+            throw new IllegalStateException("Failed to read claim region files", e);
+        }
+        plugin.getLogger().info("Read claim region files in " + (System.currentTimeMillis() - start) + "ms");
 
-        if (files != null) {
-            for (File file : files) {
-                try {
-                    Guild guild = loadGuild(file);
-                    if (guild != null) {
-                        guilds.add(guild);
-                        guildCache.put(guild.getName(), guild);
-                        plugin.getLogger().info("Loaded guild: " + guild.getName());
+        // Parsing is the expensive part and needs nothing from the server, so spread it over the cores
+        List<ParsedGuildFile> parsedFiles = parseGuildFiles(listGuildFiles());
+
+        // Reserve every stored id first, so guilds saved before ids existed
+        // are numbered after them instead of taking one of them
+        start = System.currentTimeMillis();
+        for (ParsedGuildFile parsed : parsedFiles) {
+            if (parsed.config.isInt("id")) {
+                plugin.getGuildManager().reserveGuildId(parsed.config.getInt("id"));
+            }
+        }
+
+        Map<Guild, File> legacyGuilds = new LinkedHashMap<>();
+        List<Guild> yamlClaimGuilds = new ArrayList<>();
+        for (ParsedGuildFile parsed : parsedFiles) {
+            try {
+                Guild guild = loadGuild(parsed);
+                if (guild != null) {
+                    List<ChunkLocation> claims = storedClaims.remove(guild.getId());
+                    if (claims != null) {
+                        claims.forEach(guild::restoreClaim);
+                    }
+                    if (parsed.yamlClaims != null) {
+                        parsed.yamlClaims.forEach(guild::restoreClaim);
+                        yamlClaimGuilds.add(guild);
+                    }
+                    guild.markPersisted();
+                    guilds.add(guild);
+                    guildCache.put(guild.getName(), guild);
+                    if (!parsed.config.isInt("id")) {
+                        legacyGuilds.put(guild, parsed.file);
                     }
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Failed to load guild from file: " + file.getName());
-                    e.printStackTrace();
                 }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Failed to load guild from file: " + parsed.file.getName());
+                e.printStackTrace();
             }
         }
+        plugin.getLogger().info("Built " + guilds.size() + " guilds in " + (System.currentTimeMillis() - start) + "ms");
 
+        if (!storedClaims.isEmpty()) {
+            plugin.getLogger().warning("Claim region files hold claims of " + storedClaims.size()
+                    + " guilds without a guild file: " + storedClaims.keySet());
+        }
+        if (!yamlClaimGuilds.isEmpty()) {
+            convertYamlClaims(yamlClaimGuilds, legacyGuilds.keySet());
+        }
+        if (!legacyGuilds.isEmpty()) {
+            migrateToIdFiles(legacyGuilds);
+        }
         return guilds;
     }
 
-    public void deleteGuild(String name) {
-        guildCache.remove(name);
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            File guildFile = new File(guildsFolder, name + ".yml");
-            if (guildFile.exists()) {
-                createBackup(name);
-                guildFile.delete();
+    private List<ChunkLocation> readYamlClaims(YamlConfiguration config) {
+        List<ChunkLocation> claims = new ArrayList<>();
+        List<?> entries = config.getList("claims");
+        if (entries == null) {
+            return claims;
+        }
+        for (Object entry : entries) {
+            if (entry instanceof Map<?, ?> claim) {
+                Object world = claim.get("world");
+                if (world != null && claim.get("x") instanceof Number x && claim.get("z") instanceof Number z) {
+                    claims.add(new ChunkLocation(world.toString(), x.intValue(), z.intValue()));
+                }
+            } else if (entry instanceof String claim) {
+                // "world,x,z" as written by the old claimed-chunks migration
+                String[] parts = claim.split(",");
+                if (parts.length == 3) {
+                    claims.add(new ChunkLocation(parts[0], Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim())));
+                }
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Moves claims stored in guild .yml files into the region files
+     * The region files are written before any .yml is rewritten without its claims,
+     * so a failure at any point leaves every claim in at least one place.
+     * @param guilds Guilds whose .yml still lists claims
+     * @param rewrittenLater Guilds whose .yml the id migration rewrites anyway
+     */
+    private void convertYamlClaims(List<Guild> guilds, Set<Guild> rewrittenLater) {
+        long start = System.currentTimeMillis();
+        int claims = 0;
+        for (Guild guild : guilds) {
+            claimRegions.applyChanges(guild.getId(), guild.getClaimedChunks(), Collections.emptySet());
+            claims += guild.getClaimedChunks().size();
+        }
+        try {
+            claimRegions.flush();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to write claim region files, claims stay in the guild files", e);
+            return;
+        }
+        for (Guild guild : guilds) {
+            if (!rewrittenLater.contains(guild)) {
+                // Loaded guilds have no changes recorded, so ask for the file to be rewritten
+                guild.requestFullSave();
+                saveGuild(guild);
             }
-        });
+        }
+        plugin.getLogger().info("Moved " + claims + " claims of " + guilds.size() + " guilds into claim region files in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Rewrites guilds stored as name.yml to id.yml and moves their vaults along
+     * The original files are copied to the legacy folder first. An original is only
+     * deleted if no migrated guild was written over it, which happens when a guild
+     * name equals another guild's new id.
+     * @param legacyGuilds Guilds loaded from name-keyed files, with their files
+     */
+    private void migrateToIdFiles(Map<Guild, File> legacyGuilds) {
+        File legacyFolder = new File(guildsFolder, "legacy");
+        legacyFolder.mkdirs();
+        Map<Guild, File> legacyVaults = new HashMap<>();
+        try {
+            for (Map.Entry<Guild, File> entry : legacyGuilds.entrySet()) {
+                File file = entry.getValue();
+                Files.copy(file.toPath(), new File(legacyFolder, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                String baseName = file.getName().substring(0, file.getName().length() - ".yml".length());
+                File vault = new File(guildsFolder, baseName + "-storage.yml");
+                if (vault.exists()) {
+                    File vaultCopy = new File(legacyFolder, vault.getName());
+                    Files.copy(vault.toPath(), vaultCopy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    legacyVaults.put(entry.getKey(), vaultCopy);
+                }
+            }
+
+            Set<String> written = new HashSet<>();
+            for (Guild guild : legacyGuilds.keySet()) {
+                guild.requestFullSave();
+                saveGuild(guild);
+                written.add(guild.getId() + ".yml");
+                File vaultCopy = legacyVaults.get(guild);
+                if (vaultCopy != null) {
+                    Files.copy(vaultCopy.toPath(), new File(guildsFolder, guild.getId() + "-storage.yml").toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    written.add(guild.getId() + "-storage.yml");
+                }
+            }
+
+            for (Map.Entry<Guild, File> entry : legacyGuilds.entrySet()) {
+                File file = entry.getValue();
+                if (!written.contains(file.getName())) {
+                    Files.deleteIfExists(file.toPath());
+                }
+                File vaultCopy = legacyVaults.get(entry.getKey());
+                if (vaultCopy != null && !written.contains(vaultCopy.getName())) {
+                    Files.deleteIfExists(new File(guildsFolder, vaultCopy.getName()).toPath());
+                }
+            }
+            plugin.getLogger().info("Migrated " + legacyGuilds.size() + " guild files to id-based names, originals kept in "
+                    + legacyFolder.getPath());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to migrate guild files to id-based names", e);
+        }
+    }
+
+    @Override
+    public synchronized int loadNextGuildId() {
+        if (!metaFile.exists()) {
+            return 1;
+        }
+        YamlConfiguration meta = new YamlConfiguration();
+        try {
+            meta.load(metaFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            // Guessing would risk handing out the id of a deleted guild again
+            throw new IllegalStateException("Failed to read " + metaFile.getName(), e);
+        }
+        storedNextGuildId = Math.max(storedNextGuildId, meta.getInt("next-guild-id", 1));
+        return Math.max(1, storedNextGuildId);
+    }
+
+    @Override
+    public synchronized void saveNextGuildId(int nextId) {
+        if (nextId <= storedNextGuildId) {
+            return;
+        }
+        YamlConfiguration meta = new YamlConfiguration();
+        meta.set("next-guild-id", nextId);
+        try {
+            saveAtomically(meta, metaFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save the next guild id", e);
+        }
+        storedNextGuildId = nextId;
+    }
+
+    /**
+     * Deletes a guild on the calling thread
+     * Deletions are normally scheduled by {@link WriteBehindGuildStorage}, which calls {@link #writeGuildDeletion(Guild)}
+     * @param guild The guild to delete
+     */
+    @Override
+    public void deleteGuild(Guild guild) {
+        try {
+            writeGuildDeletion(guild);
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to delete guild " + guild.getName(), e);
+        }
+        flushClaimRegions();
+    }
+
+    @Override
+    public void writeGuildDeletion(Guild guild) {
+        int guildId = guild.getId();
+        deletedGuilds.put(guildId, guild);
+        guildCache.remove(guild.getName(), guild);
+        // The writer is kept, so a write waiting on it sees the deletion once it gets the lock
+        GuildWriter writer = writers.computeIfAbsent(guildId, id -> new GuildWriter());
+        synchronized (writer) {
+            File guildFile = new File(guildsFolder, guildId + ".yml");
+            try {
+                if (guildFile.exists()) {
+                    createBackup(guildId);
+                    Files.delete(guildFile.toPath());
+                }
+                Files.deleteIfExists(new File(guildsFolder, guildId + VAULT_EXTENSION).toPath());
+                Files.deleteIfExists(new File(guildsFolder, guildId + "-storage.yml").toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete the files of guild id " + guildId, e);
+            }
+            claimRegions.removeGuild(guildId);
+        }
     }
 
     /**
@@ -434,24 +662,58 @@ public class YamlGuildStorage implements GuildStorage {
                 location.getPitch();
     }
 
-    public void saveStorageData(String guildName, ItemStack[] contents) {
-        File storageFile = new File(guildsFolder, guildName + "-storage.yml");
-        YamlConfiguration config = new YamlConfiguration();
-        config.set("contents", contents);
+    @Override
+    public void saveStorageData(int guildId, ItemStack[] contents) {
         try {
-            config.save(storageFile);
+            AtomicFiles.write(new File(guildsFolder, guildId + VAULT_EXTENSION).toPath(),
+                    ItemStackCodec.encode(contents), fsync);
+            // The vault now lives in the binary file; drop the YAML copy it was converted from
+            Files.deleteIfExists(new File(guildsFolder, guildId + "-storage.yml").toPath());
         } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save storage for guild: " + guildName);
-            e.printStackTrace();
+            throw new UncheckedIOException("Failed to save storage for guild id: " + guildId, e);
         }
     }
 
-    public ConfigurationSection getStorageData(String guildName) {
-        File storageFile = new File(guildsFolder, guildName + "-storage.yml");
-        if (storageFile.exists()) {
-            return YamlConfiguration.loadConfiguration(storageFile);
+    @Override
+    public ItemStack[] loadStorageData(int guildId) {
+        File vaultFile = new File(guildsFolder, guildId + VAULT_EXTENSION);
+        if (vaultFile.exists()) {
+            try {
+                return ItemStackCodec.decode(Files.readAllBytes(vaultFile.toPath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load storage for guild id: " + guildId, e);
+            }
         }
-        return null;
+
+        File storageFile = new File(guildsFolder, guildId + "-storage.yml");
+        if (!storageFile.exists()) {
+            return null;
+        }
+        ItemStack[] items = loadYamlStorage(guildId, storageFile);
+        if (items != null) {
+            // Convert each vault the first time it is read
+            saveStorageData(guildId, items);
+            plugin.getLogger().info("Converted storage of guild id " + guildId + " to the compact format");
+        }
+        return items;
+    }
+
+    private ItemStack[] loadYamlStorage(int guildId, File storageFile) {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(storageFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            throw new IllegalStateException("Failed to load storage for guild id: " + guildId, e);
+        }
+        List<?> contents = config.getList("contents");
+        if (contents == null) {
+            return null;
+        }
+        ItemStack[] items = new ItemStack[contents.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = contents.get(i) instanceof ItemStack item ? item : null;
+        }
+        return items;
     }
 
     private File backupSettingsFile;
@@ -509,30 +771,28 @@ public class YamlGuildStorage implements GuildStorage {
         }, 72000L, 72000L);
     }
 
-    private void updateGuildConfig(YamlConfiguration config, Guild guild) {
-        boolean updated = false;
-
-        if (!config.contains("bonus-claims")) {
-            config.set("bonus-claims", guild.getBonusClaims());
-            updated = true;
-        }
-
-        if (!config.contains("pvp-enabled")) {
-            config.set("pvp-enabled", guild.isPvPEnabled());
-            updated = true;
-        }
-
-        if (!config.contains("builtStructures")) {
-            config.set("builtStructures", new HashSet<>(guild.getBuiltStructures()));
-            updated = true;
+    /**
+     * A guild file read and parsed on a loader thread, waiting to be turned into a guild
+     */
+    private static final class ParsedGuildFile {
+        private final File file;
+        private final YamlConfiguration config;
+        private final Map<String, Object> data;
+        private final List<ChunkLocation> yamlClaims;
+
+        private ParsedGuildFile(File file, YamlConfiguration config, Map<String, Object> data, List<ChunkLocation> yamlClaims) {
+            this.file = file;
+            this.config = config;
+            this.data = data;
+            this.yamlClaims = yamlClaims;
         }
+    }
 
-        if (updated) {
-            try {
-                config.save(new File(guildsFolder, guild.getName() + ".yml"));
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Error saving updated guild config for: " + guild.getName(), e);
-            }
-        }
+    /**
+     * Serializes writes of one guild and lets a redundant write step aside
+     */
+    private static final class GuildWriter {
+        // Highest snapshot sequence handed to this writer so far
+        private final AtomicLong newest = new AtomicLong();
     }
 }
@@ -0,0 +1,225 @@
+package com.pwing.guilds.territory;
+
+import com.pwing.guilds.PwingGuilds;
+import com.pwing.guilds.api.GuildTerritoryEnterEvent;
+import com.pwing.guilds.api.GuildTerritoryLeaveEvent;
+import com.pwing.guilds.guild.Guild;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which guild owns the chunk each online player is standing in.
+ * The owner is resolved once when a player, or the vehicle they ride, crosses a chunk
+ * border, so placeholders and events can read it without querying the claim index.
+ */
+public class TerritoryTracker implements Listener {
+    private final PwingGuilds plugin;
+    private final Map<UUID, PlayerTerritory> territories = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new territory tracker
+     * @param plugin The plugin instance
+     */
+    public TerritoryTracker(PwingGuilds plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts tracking every player already online, e.g. after a reload
+     */
+    public void trackOnlinePlayers() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            update(player, player.getLocation());
+        }
+    }
+
+    /**
+     * Gets the guild owning the chunk a player is standing in
+     * @param player The player
+     * @return The owning guild, or null if the player is in the wilderness
+     */
+    public Guild getCurrentTerritory(Player player) {
+        PlayerTerritory territory = territories.get(player.getUniqueId());
+        return territory == null ? null : territory.guild;
+    }
+
+    /**
+     * Re-resolves the territory of players standing in a chunk whose owner changed
+     * @param worldName The world of the chunk
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     */
+    public void refreshChunk(String worldName, int chunkX, int chunkZ) {
+        for (PlayerTerritory territory : territories.values()) {
+            if (territory.chunkX == chunkX && territory.chunkZ == chunkZ && territory.worldName.equals(worldName)) {
+                refresh(territory);
+            }
+        }
+    }
+
+    /**
+     * Re-resolves the territory of every player standing in a guild's land
+     * Used when a guild is deleted or replaced
+     * @param guild The guild whose territory changed
+     */
+    public void refreshGuild(Guild guild) {
+        for (PlayerTerritory territory : territories.values()) {
+            if (territory.guild == guild) {
+                refresh(territory);
+            }
+        }
+    }
+
+    /**
+     * Tracks players when they join
+     * @param event The join event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    /**
+     * Stops tracking players when they quit
+     * @param event The quit event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        territories.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Updates a player's territory when they cross a chunk border
+     * @param event The move event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null) return;
+        if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4)
+                && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4)
+                && from.getWorld() == to.getWorld()) {
+            return;
+        }
+        update(event.getPlayer(), to);
+    }
+
+    /**
+     * Updates the territory of players riding a vehicle or mount when it crosses a chunk border
+     * Riding players get no move events of their own
+     * @param event The vehicle move event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVehicleMove(VehicleMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4)
+                && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4)
+                && from.getWorld() == to.getWorld()) {
+            return;
+        }
+        updatePassengers(event.getVehicle(), to);
+    }
+
+    private void updatePassengers(Entity vehicle, Location location) {
+        for (Entity passenger : vehicle.getPassengers()) {
+            if (passenger instanceof Player) {
+                update((Player) passenger, location);
+            }
+            // Passengers can carry passengers of their own
+            updatePassengers(passenger, location);
+        }
+    }
+
+    /**
+     * Updates a player's territory after teleporting
+     * @param event The teleport event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (event.getTo() != null) {
+            update(event.getPlayer(), event.getTo());
+        }
+    }
+
+    /**
+     * Updates a player's territory after respawning
+     * @param event The respawn event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        update(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    /**
+     * Updates a player's territory after changing worlds
+     * @param event The world change event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    private void update(Player player, Location location) {
+        World world = location.getWorld();
+        if (world == null) return;
+
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        PlayerTerritory territory = territories.get(player.getUniqueId());
+        if (territory == null) {
+            territory = new PlayerTerritory(player);
+            territories.put(player.getUniqueId(), territory);
+        } else if (territory.chunkX == chunkX && territory.chunkZ == chunkZ && territory.worldName.equals(world.getName())) {
+            return;
+        }
+        territory.worldName = world.getName();
+        territory.chunkX = chunkX;
+        territory.chunkZ = chunkZ;
+        refresh(territory);
+    }
+
+    private void refresh(PlayerTerritory territory) {
+        Guild previous = territory.guild;
+        Guild current = plugin.getGuildManager().getClaimIndex().get(territory.worldName, territory.chunkX, territory.chunkZ);
+        if (previous == current) return;
+
+        territory.guild = current;
+        if (previous != null) {
+            Bukkit.getPluginManager().callEvent(new GuildTerritoryLeaveEvent(territory.player, previous));
+        }
+        if (current != null) {
+            Bukkit.getPluginManager().callEvent(new GuildTerritoryEnterEvent(territory.player, current));
+        }
+    }
+
+    private static final class PlayerTerritory {
+        private final Player player;
+        private volatile String worldName = "";
+        private volatile int chunkX;
+        private volatile int chunkZ;
+        private volatile Guild guild;
+
+        private PlayerTerritory(Player player) {
+            this.player = player;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.pwing.guilds.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files without ever leaving a partially written one behind.
+ * Data goes to a temporary file next to the target, which is then moved over it,
+ * so readers and crashes see either the old or the new contents.
+ */
+public final class AtomicFiles {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Writes data to a file through a temporary file and an atomic move
+     * @param target The file to replace
+     * @param data The new contents
+     * @param fsync Whether to force the data to disk before the move; without it a
+     *              power loss may still surface an empty file on some file systems
+     * @throws IOException if the file cannot be written; the old file is left in place
+     */
+    public static void write(Path target, ByteBuffer data, boolean fsync) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            if (fsync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        replace(temp, target);
+    }
+
+    /**
+     * Streams data to a file through a temporary file and an atomic move
+     * For contents too large to build in memory first, e.g. backup archives
+     * @param target The file to replace
+     * @param writer Writes the new contents; the stream is closed afterwards
+     * @param fsync Whether to force the data to disk before the move
+     * @throws IOException if the file cannot be written; the old file is left in place
+     */
+    public static void write(Path target, StreamWriter writer, boolean fsync) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            writer.write(out);
+            out.flush();
+            if (fsync) {
+                channel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        replace(temp, target);
+    }
+
+    private static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Some file systems cannot move atomically; a plain replace is still
+            // better than writing into the target directly
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes bytes to a file through a temporary file and an atomic move
+     * @param target The file to replace
+     * @param data The new contents
+     * @param fsync Whether to force the data to disk before the move
+     * @throws IOException if the file cannot be written; the old file is left in place
+     */
+    public static void write(Path target, byte[] data, boolean fsync) throws IOException {
+        write(target, ByteBuffer.wrap(data), fsync);
+    }
+
+    /**
+     * Writes file contents to a stream
+     */
+    @FunctionalInterface
+    public interface StreamWriter {
+        /**
+         * Writes the contents
+         * @param out The stream to write to
+         * @throws IOException if writing fails
+         */
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,305 @@
+package com.pwing.guilds.util;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact, versioned binary format for inventory contents.
+ * Empty slots are skipped and identical items are stored once, with the amount kept
+ * per slot. Items without meta are stored by material name; other items use Paper's
+ * native item bytes where available, which the server upgrades across Minecraft
+ * versions on load, and Bukkit serialization otherwise. Everything after the header
+ * is deflated.
+ */
+public final class ItemStackCodec {
+    private static final int MAGIC = 0x50475643; // "PGVC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5; // magic, version
+    // Far above any inventory, so corrupt data cannot make us allocate huge arrays
+    private static final int MAX_SLOTS = 1 << 16;
+    private static final int MAX_ITEM_BYTES = 1 << 24;
+
+    private static final byte PLAIN = 0;
+    private static final byte NATIVE = 1;
+    private static final byte BUKKIT = 2;
+
+    private static final boolean NATIVE_BYTES = hasNativeBytes();
+
+    private ItemStackCodec() {
+    }
+
+    private static boolean hasNativeBytes() {
+        try {
+            ItemStack.class.getMethod("serializeAsBytes");
+            ItemStack.class.getMethod("deserializeBytes", byte[].class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether data was written by this codec
+     * Used to tell it apart from contents stored in an older format
+     * @param data The stored data
+     * @return true if {@link #decode(byte[])} can read it
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE
+                && ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * Encodes inventory contents
+     * @param items The contents, null or air for empty slots
+     * @return The encoded contents
+     * @throws IOException if an item cannot be serialized
+     */
+    public static byte[] encode(ItemStack[] items) throws IOException {
+        // Identical items share one entry; the key has amount 1 so only the amount may differ
+        Map<ItemStack, Integer> distinct = new LinkedHashMap<>();
+        int[] slots = new int[items.length];
+        int[] ids = new int[items.length];
+        int[] amounts = new int[items.length];
+        int filled = 0;
+        for (int slot = 0; slot < items.length; slot++) {
+            ItemStack item = items[slot];
+            if (item == null || item.getType().isAir() || item.getAmount() <= 0) {
+                continue;
+            }
+            ItemStack key = item.clone();
+            key.setAmount(1);
+            Integer id = distinct.get(key);
+            if (id == null) {
+                id = distinct.size();
+                distinct.put(key, id);
+            }
+            slots[filled] = slot;
+            ids[filled] = id;
+            amounts[filled] = item.getAmount();
+            filled++;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.flush();
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater));
+            writeVarInt(out, items.length);
+            writeVarInt(out, distinct.size());
+            for (ItemStack item : distinct.keySet()) {
+                writeItem(out, item);
+            }
+            writeVarInt(out, filled);
+            int previous = -1;
+            for (int i = 0; i < filled; i++) {
+                writeVarInt(out, slots[i] - previous - 1);
+                writeVarInt(out, ids[i]);
+                writeVarInt(out, amounts[i]);
+                previous = slots[i];
+            }
+            out.close();
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes inventory contents written by {@link #encode(ItemStack[])}
+     * @param data The encoded contents
+     * @return The contents, with null for empty slots
+     * @throws IOException if the data is corrupt, from a newer version, or holds items
+     *                     this server cannot read
+     */
+    public static ItemStack[] decode(byte[] data) throws IOException {
+        if (!isEncoded(data)) {
+            throw new IOException("Not encoded item contents");
+        }
+        int version = data[4];
+        if (version != VERSION) {
+            throw new IOException("Unsupported item contents version " + version);
+        }
+
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE), inflater))) {
+            ItemStack[] items = new ItemStack[checkedCount(readVarInt(in))];
+            int distinctCount = checkedCount(readVarInt(in));
+            List<ItemStack> distinct = new ArrayList<>(distinctCount);
+            for (int i = 0; i < distinctCount; i++) {
+                distinct.add(readItem(in));
+            }
+            int filled = checkedCount(readVarInt(in));
+            int slot = -1;
+            for (int i = 0; i < filled; i++) {
+                slot += readVarInt(in) + 1;
+                int id = readVarInt(in);
+                int amount = readVarInt(in);
+                if (slot < 0 || slot >= items.length || id < 0 || id >= distinct.size() || amount <= 0) {
+                    throw new IOException("Corrupt item contents");
+                }
+                ItemStack item = distinct.get(id).clone();
+                item.setAmount(amount);
+                items[slot] = item;
+            }
+            return items;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Encodes a single item, e.g. one storage slot
+     * Not deflated, as a single item is too small to gain from it
+     * @param item The item, not empty
+     * @return The encoded item
+     * @throws IOException if the item cannot be serialized
+     */
+    public static byte[] encodeItem(ItemStack item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        ItemStack key = item.clone();
+        key.setAmount(1);
+        writeItem(out, key);
+        writeVarInt(out, item.getAmount());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes an item written by {@link #encodeItem(ItemStack)}
+     * @param data The encoded item
+     * @return The item
+     * @throws IOException if the data is corrupt, from a newer version, or holds an item
+     *                     this server cannot read
+     */
+    public static ItemStack decodeItem(byte[] data) throws IOException {
+        if (!isEncoded(data)) {
+            throw new IOException("Not an encoded item");
+        }
+        int version = data[4];
+        if (version != VERSION) {
+            throw new IOException("Unsupported item version " + version);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE));
+        ItemStack item = readItem(in);
+        int amount = readVarInt(in);
+        if (amount <= 0) {
+            throw new IOException("Corrupt item, amount " + amount);
+        }
+        item.setAmount(amount);
+        return item;
+    }
+
+    private static void writeItem(DataOutputStream out, ItemStack item) throws IOException {
+        if (!item.hasItemMeta()) {
+            out.writeByte(PLAIN);
+            writeBytes(out, item.getType().name().getBytes(StandardCharsets.UTF_8));
+        } else if (NATIVE_BYTES) {
+            out.writeByte(NATIVE);
+            writeBytes(out, item.serializeAsBytes());
+        } else {
+            out.writeByte(BUKKIT);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (BukkitObjectOutputStream objects = new BukkitObjectOutputStream(bytes)) {
+                objects.writeObject(item);
+            }
+            writeBytes(out, bytes.toByteArray());
+        }
+    }
+
+    private static ItemStack readItem(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        byte[] bytes = readBytes(in);
+        switch (kind) {
+            case PLAIN -> {
+                String name = new String(bytes, StandardCharsets.UTF_8);
+                Material material = Material.getMaterial(name);
+                if (material == null) {
+                    throw new IOException("Unknown material " + name);
+                }
+                return new ItemStack(material);
+            }
+            case NATIVE -> {
+                if (!NATIVE_BYTES) {
+                    throw new IOException("Item contents were written by a Paper server and need one to load");
+                }
+                return ItemStack.deserializeBytes(bytes);
+            }
+            case BUKKIT -> {
+                try (BukkitObjectInputStream objects = new BukkitObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (ItemStack) objects.readObject();
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("Corrupt item", e);
+                }
+            }
+            default -> throw new IOException("Unknown item kind " + kind);
+        }
+    }
+
+    private static int checkedCount(int count) throws IOException {
+        if (count < 0 || count > MAX_SLOTS) {
+            throw new IOException("Corrupt item contents, " + count + " entries");
+        }
+        return count;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > MAX_ITEM_BYTES) {
+            throw new IOException("Corrupt item contents, item of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt item contents, varint too long");
+    }
+}
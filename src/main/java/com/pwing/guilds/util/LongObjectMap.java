@@ -0,0 +1,275 @@
+package com.pwing.guilds.util;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to object values.
+ * Uses linear probing with backward-shift deletion, so lookups never allocate
+ * and no tombstones accumulate. Null values are not permitted; an empty slot is
+ * marked by a null value.
+ * <p>
+ * The map is not thread-safe for writers, but a reader racing a single writer
+ * never fails: it may observe a stale or missing entry, which callers detect
+ * with an external version check such as a {@link java.util.concurrent.locks.StampedLock}.
+ *
+ * @param <V> The value type
+ */
+public class LongObjectMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private volatile Table table;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Creates an empty map with the default capacity
+     */
+    public LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map sized for the expected number of entries
+     * @param expectedSize Number of entries expected to be stored
+     */
+    public LongObjectMap(int expectedSize) {
+        allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+    }
+
+    /**
+     * Gets the value mapped to a key
+     * @param key The key to look up
+     * @return The mapped value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Table table = this.table;
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = values.length - 1;
+        int slot = mix(key) & mask;
+        Object value;
+        // Bounded so a reader racing a writer cannot spin forever
+        for (int probes = 0; probes <= mask && (value = values[slot]) != null; probes++) {
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a key is mapped
+     * @param key The key to check
+     * @return true if the key has a value
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous mapping
+     * @param key The key
+     * @param value The value, must not be null
+     * @return The previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongObjectMap does not permit null values");
+        }
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = values.length - 1;
+        int slot = mix(key) & mask;
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for a key
+     * @param key The key to remove
+     * @return The removed value, or null if the key was not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Object[] values = table.values;
+        long[] keys = table.keys;
+        int mask = values.length - 1;
+        int slot = mix(key) & mask;
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                shiftKeysBack(slot);
+                size--;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes every entry whose value matches the predicate
+     * @param filter Predicate selecting values to remove
+     * @return Number of entries removed
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(Predicate<? super V> filter) {
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        long[] doomed = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < values.length; slot++) {
+            Object value = values[slot];
+            if (value != null && filter.test((V) value)) {
+                doomed[count++] = keys[slot];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            remove(doomed[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Calls the consumer for every entry, in table order
+     * @param consumer Receives each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        Table table = this.table;
+        for (int slot = 0; slot < table.values.length; slot++) {
+            Object value = table.values[slot];
+            if (value != null) {
+                consumer.accept(table.keys[slot], (V) value);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries in the map
+     * @return Entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map is empty
+     * @return true if no entries are stored
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries while keeping the current capacity
+     */
+    public void clear() {
+        Arrays.fill(table.values, null);
+        size = 0;
+    }
+
+    private void shiftKeysBack(int slot) {
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = values.length - 1;
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & mask;
+            Object value;
+            while (true) {
+                if ((value = values[slot]) == null) {
+                    values[last] = null;
+                    return;
+                }
+                int home = mix(keys[slot]) & mask;
+                // Move the entry back only if its home slot is not in (last, slot]
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[last] = keys[slot];
+            values[last] = value;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        Table old = table;
+        Table resized = new Table(newCapacity);
+        long[] keys = resized.keys;
+        Object[] values = resized.values;
+        int mask = newCapacity - 1;
+        for (int i = 0; i < old.values.length; i++) {
+            Object value = old.values[i];
+            if (value != null) {
+                int slot = mix(old.keys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = old.keys[i];
+                values[slot] = value;
+            }
+        }
+        // Publish the fully built table in one write so readers never see mismatched arrays
+        table = resized;
+        resizeThreshold = (int) (newCapacity * LOAD_FACTOR);
+    }
+
+    private void allocate(int capacity) {
+        table = new Table(capacity);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        return Math.max(size, 2);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Receives map entries without boxing the key
+     * @param <V> The value type
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * Accepts one entry
+         * @param key The entry key
+         * @param value The entry value
+         */
+        void accept(long key, V value);
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+}